@@ -0,0 +1,31 @@
+package org.openpnp.benchmark;
+
+import java.io.File;
+
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.driver.NullDriver;
+import org.openpnp.model.Configuration;
+import org.openpnp.spi.Machine;
+
+import com.google.common.io.Files;
+
+/**
+ * Provides the default machine configuration, loaded from a new temporary directory once per
+ * JVM, so that benchmarks which need a machine always start from the same one. The NullDriver's
+ * simulated movement is turned off so that moves made while setting up are instant.
+ */
+public class BenchmarkMachine {
+    private static Machine machine;
+
+    public static synchronized Machine get() throws Exception {
+        if (machine == null) {
+            File workingDirectory = new File(Files.createTempDir(), ".openpnp");
+            Configuration.initialize(workingDirectory);
+            Configuration.get().load();
+            machine = Configuration.get().getMachine();
+            ((NullDriver) ((ReferenceMachine) machine).getDriver()).setFeedRateMmPerMinute(0);
+            machine.setEnabled(true);
+        }
+        return machine;
+    }
+}
@@ -0,0 +1,66 @@
+package org.openpnp.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpnp.machine.reference.driver.CommandTemplate;
+
+/**
+ * Substitutes the variables of typical GcodeDriver commands, as done for every move and
+ * actuation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandTemplateBenchmark {
+    private CommandTemplate moveToTemplate;
+
+    private CommandTemplate actuateTemplate;
+
+    private Map<String, Object> moveToVariables;
+
+    private Map<String, Object> actuateVariables;
+
+    @Setup
+    public void setup() {
+        moveToTemplate = new CommandTemplate(
+                "G0 {X:X%.4f} {Y:Y%.4f} {Z:Z%.4f} {Rotation:E%.4f} F{FeedRate:%.0f} ; Send standard Gcode move");
+        moveToVariables = new HashMap<>();
+        moveToVariables.put("X", 123.4567);
+        moveToVariables.put("Y", 45.6789);
+        moveToVariables.put("Z", null);
+        moveToVariables.put("Rotation", 90.0);
+        moveToVariables.put("FeedRate", 10000.0);
+
+        actuateTemplate = new CommandTemplate("{True:M808}{False:M809} ; {Name} {Index}");
+        actuateVariables = new HashMap<>();
+        actuateVariables.put("True", true);
+        actuateVariables.put("False", null);
+        actuateVariables.put("Name", "Vacuum");
+        actuateVariables.put("Index", 1);
+    }
+
+    @Benchmark
+    public String substituteMoveTo() {
+        return moveToTemplate.substitute(moveToVariables);
+    }
+
+    @Benchmark
+    public String substituteActuate() {
+        return actuateTemplate.substitute(actuateVariables);
+    }
+}
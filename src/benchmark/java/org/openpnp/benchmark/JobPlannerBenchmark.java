@@ -0,0 +1,112 @@
+package org.openpnp.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.CostModelPnpJobPlanner;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.SimplePnpJobPlanner;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.TrivialPnpJobPlanner;
+import org.openpnp.model.Board;
+import org.openpnp.model.Board.Side;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Part;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.Head;
+import org.openpnp.spi.PnpJobPlanner;
+import org.openpnp.spi.PnpJobPlanner.PlannedPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+
+/**
+ * Plans every cycle of a job of randomly scattered placements on the default machine, the way
+ * the job processor calls the planner: once per cycle with the placements that are left.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobPlannerBenchmark {
+    @Param({"Trivial", "Simple", "CostModel"})
+    public String planner;
+
+    @Param({"50", "500"})
+    public int placementCount;
+
+    private Head head;
+
+    private List<JobPlacement> jobPlacements;
+
+    @Setup
+    public void setup() throws Exception {
+        head = BenchmarkMachine.get().getDefaultHead();
+        Part part = Configuration.get().getPart("R0805-1K");
+
+        Board board = new Board();
+        board.setName("benchmark");
+        BoardLocation boardLocation = new BoardLocation(board);
+        boardLocation.setLocation(new Location(LengthUnit.Millimeters, 50, 50, 0, 0));
+        boardLocation.setSide(Side.Top);
+
+        Random rnd = new Random(42);
+        jobPlacements = new ArrayList<>();
+        for (int i = 0; i < placementCount; i++) {
+            Placement placement = new Placement("R" + i);
+            placement.setPart(part);
+            placement.setSide(Side.Top);
+            placement.setLocation(new Location(LengthUnit.Millimeters, rnd.nextDouble() * 100,
+                    rnd.nextDouble() * 80, 0, rnd.nextInt(4) * 90));
+            board.addPlacement(placement);
+            jobPlacements.add(new JobPlacement(boardLocation, placement));
+        }
+    }
+
+    @Benchmark
+    public int planJob() {
+        // A new planner for each job, as planners may keep state for the job they are planning.
+        PnpJobPlanner pnpJobPlanner = createPlanner();
+        List<JobPlacement> remaining = new ArrayList<>(jobPlacements);
+        int cycles = 0;
+        while (!remaining.isEmpty()) {
+            List<PlannedPlacement> plannedPlacements =
+                    pnpJobPlanner.plan(head, new ArrayList<>(remaining));
+            if (plannedPlacements.isEmpty()) {
+                break;
+            }
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                remaining.remove(plannedPlacement.jobPlacement);
+            }
+            cycles++;
+        }
+        return cycles;
+    }
+
+    private PnpJobPlanner createPlanner() {
+        switch (planner) {
+            case "Trivial":
+                return new TrivialPnpJobPlanner();
+            case "Simple":
+                return new SimplePnpJobPlanner();
+            case "CostModel":
+                return new CostModelPnpJobPlanner();
+            default:
+                throw new IllegalArgumentException("Unknown planner " + planner);
+        }
+    }
+}
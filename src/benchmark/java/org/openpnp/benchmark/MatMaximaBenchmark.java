@@ -0,0 +1,76 @@
+package org.openpnp.benchmark;
+
+import java.awt.Point;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpnp.util.OpenCvUtils;
+import org.openpnp.util.ReferenceMatMaxima;
+
+/**
+ * Finds the maxima of a camera sized, template match like score map with the current
+ * OpenCvUtils.matMaxima() and with the original implementation that read every pixel with
+ * Mat.get(). The map is random noise with a fixed seed, blurred so it has peaks like a real
+ * template match result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatMaximaBenchmark {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * The size of the score map, as width x height.
+     */
+    @Param({"640x480", "2592x1944"})
+    public String resolution;
+
+    private Mat scores;
+
+    @Setup
+    public void setup() {
+        String[] size = resolution.split("x");
+        Core.setRNGSeed(42);
+        scores = new Mat(Integer.parseInt(size[1]), Integer.parseInt(size[0]), CvType.CV_32FC1);
+        Core.randu(scores, 0, 1);
+        Imgproc.GaussianBlur(scores, scores, new Size(9, 9), 3);
+    }
+
+    @TearDown
+    public void tearDown() {
+        scores.release();
+    }
+
+    @Benchmark
+    public List<Point> matMaxima() {
+        return OpenCvUtils.matMaxima(scores, 0.5, 1.0);
+    }
+
+    @Benchmark
+    public List<Point> matMaximaOriginal() {
+        return ReferenceMatMaxima.matMaxima(scores, 0.5, 1.0);
+    }
+}
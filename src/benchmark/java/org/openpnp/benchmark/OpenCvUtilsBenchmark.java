@@ -0,0 +1,67 @@
+package org.openpnp.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpnp.util.OpenCvUtils;
+
+/**
+ * Converts camera sized frames between BufferedImage and Mat, from images generated with a fixed
+ * seed. See MatMaximaBenchmark for matMaxima().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenCvUtilsBenchmark {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    private Mat bgrMat;
+
+    private BufferedImage bgrImage;
+
+    @Setup
+    public void setup() {
+        Core.setRNGSeed(42);
+        bgrMat = new Mat(480, 640, CvType.CV_8UC3);
+        Core.randu(bgrMat, 0, 256);
+        bgrImage = OpenCvUtils.toBufferedImage(bgrMat);
+    }
+
+    @TearDown
+    public void tearDown() {
+        bgrMat.release();
+    }
+
+    @Benchmark
+    public BufferedImage toBufferedImage() {
+        return OpenCvUtils.toBufferedImage(bgrMat);
+    }
+
+    @Benchmark
+    public int toMat() {
+        Mat mat = OpenCvUtils.toMat(bgrImage);
+        int rows = mat.rows();
+        mat.release();
+        return rows;
+    }
+}
@@ -0,0 +1,72 @@
+package org.openpnp.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.util.TravellingSalesman;
+
+/**
+ * Solves tours of Locations laid out like those of a typical machine, as in
+ * TavellingSalesmanTest: random locations all over, plus rows of feeders along X and Y.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TravellingSalesmanBenchmark {
+    @Param({"16", "160", "610"})
+    public int size;
+
+    private List<Location> locations;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        locations = new ArrayList<>();
+        int scale = (size - 10) / 6;
+        for (int i = 0; i < scale + 10; i++) {
+            locations.add(new Location(LengthUnit.Millimeters, rnd.nextDouble() * 1000.0,
+                    rnd.nextDouble() * 500.0, rnd.nextDouble() * 20.0, 0.0));
+        }
+        for (int i = 0; i < 3 * scale; i++) {
+            locations.add(new Location(LengthUnit.Millimeters,
+                    Math.floor(rnd.nextDouble() * 5.0) * 250.0 + rnd.nextDouble() * 20.0,
+                    rnd.nextDouble() * 500.0, rnd.nextDouble() * 10.0, 0.0));
+        }
+        for (int i = 0; i < 2 * scale; i++) {
+            locations.add(new Location(LengthUnit.Millimeters, rnd.nextDouble() * 1000.0,
+                    Math.floor(rnd.nextDouble() * 2.0) * 500.0 + rnd.nextDouble() * 20.0,
+                    rnd.nextDouble() * 10.0, 0.0));
+        }
+    }
+
+    @Benchmark
+    public double solveOpen() {
+        return new TravellingSalesman<Location>(new ArrayList<>(locations),
+                location -> location, new Location(LengthUnit.Millimeters), null).solve();
+    }
+
+    @Benchmark
+    public double solveLoop() {
+        return new TravellingSalesman<Location>(new ArrayList<>(locations),
+                location -> location, new Location(LengthUnit.Millimeters),
+                new Location(LengthUnit.Millimeters)).solve();
+    }
+}
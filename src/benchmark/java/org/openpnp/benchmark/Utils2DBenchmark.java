@@ -0,0 +1,128 @@
+package org.openpnp.benchmark;
+
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpnp.model.Board;
+import org.openpnp.model.Board.Side;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Placement;
+import org.openpnp.util.Utils2D;
+
+/**
+ * Transforms placements between board and machine coordinates, with and without a fiducial
+ * placement transform, and derives board locations and transforms from fiducials.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Utils2DBenchmark {
+    private BoardLocation boardLocation;
+
+    private BoardLocation transformedBoardLocation;
+
+    private Location placementLocation;
+
+    private Placement placementA;
+
+    private Placement placementB;
+
+    private Location actualLocationA;
+
+    private Location actualLocationB;
+
+    private List<Location> fiducialLocations;
+
+    private List<Location> measuredLocations;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+
+        Board board = new Board();
+        boardLocation = new BoardLocation(board);
+        boardLocation.setLocation(new Location(LengthUnit.Millimeters, 100, 50, -1, 13));
+        boardLocation.setSide(Side.Bottom);
+
+        placementLocation = new Location(LengthUnit.Millimeters, 12.5, 34.25, 0, 90);
+
+        placementA = createPlacement("A", 5, 5);
+        placementB = createPlacement("B", 95, 75);
+        actualLocationA = Utils2D
+                .calculateBoardPlacementLocation(boardLocation, placementA.getLocation())
+                .derive(null, null, null, 0d);
+        actualLocationB = Utils2D
+                .calculateBoardPlacementLocation(boardLocation, placementB.getLocation())
+                .derive(null, null, null, 0d);
+
+        fiducialLocations = new ArrayList<>();
+        measuredLocations = new ArrayList<>();
+        for (Location location : new Location[] {
+                new Location(LengthUnit.Millimeters, 5, 5, 0, 0),
+                new Location(LengthUnit.Millimeters, 95, 5, 0, 0),
+                new Location(LengthUnit.Millimeters, 95, 75, 0, 0),
+                new Location(LengthUnit.Millimeters, 5, 75, 0, 0)}) {
+            fiducialLocations.add(location);
+            measuredLocations.add(Utils2D
+                    .calculateBoardPlacementLocation(boardLocation, location)
+                    .add(new Location(LengthUnit.Millimeters, rnd.nextGaussian() * 0.05,
+                            rnd.nextGaussian() * 0.05, 0, 0)));
+        }
+
+        transformedBoardLocation = new BoardLocation(boardLocation);
+        transformedBoardLocation.setPlacementTransform(
+                Utils2D.deriveAffineTransform(fiducialLocations, measuredLocations));
+    }
+
+    private static Placement createPlacement(String id, double x, double y) {
+        Placement placement = new Placement(id);
+        placement.setLocation(new Location(LengthUnit.Millimeters, x, y, 0, 0));
+        return placement;
+    }
+
+    @Benchmark
+    public Location calculateBoardPlacementLocation() {
+        return Utils2D.calculateBoardPlacementLocation(boardLocation, placementLocation);
+    }
+
+    @Benchmark
+    public Location calculateBoardPlacementLocationTransformed() {
+        return Utils2D.calculateBoardPlacementLocation(transformedBoardLocation,
+                placementLocation);
+    }
+
+    @Benchmark
+    public Location calculateBoardPlacementLocationInverse() {
+        return Utils2D.calculateBoardPlacementLocationInverse(transformedBoardLocation,
+                actualLocationA);
+    }
+
+    @Benchmark
+    public Location calculateBoardLocation() {
+        return Utils2D.calculateBoardLocation(boardLocation, placementA, placementB,
+                actualLocationA, actualLocationB);
+    }
+
+    @Benchmark
+    public AffineTransform deriveAffineTransform() {
+        return Utils2D.deriveAffineTransform(fiducialLocations, measuredLocations);
+    }
+}
@@ -0,0 +1,97 @@
+package org.openpnp.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpnp.machine.reference.vision.ReferenceBottomVision;
+import org.openpnp.machine.reference.vision.ReferenceFiducialLocator;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Part;
+import org.openpnp.spi.Camera;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.util.VisionUtils;
+import org.openpnp.vision.pipeline.CvPipeline;
+
+/**
+ * Runs the default bottom vision and fiducial pipelines on frames captured once from the default
+ * machine's simulated cameras: a part on the nozzle over the bottom camera, and the sample board
+ * image under the top camera. The frames are given to the pipelines as the "frame" property, so
+ * only the image processing is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VisionPipelineBenchmark {
+    private CvPipeline bottomVisionPipeline;
+
+    private CvPipeline fiducialPipeline;
+
+    private Mat bottomVisionFrame;
+
+    private Mat fiducialFrame;
+
+    @Setup
+    public void setup() throws Exception {
+        Machine machine = BenchmarkMachine.get();
+
+        Nozzle nozzle = machine.getDefaultHead().getDefaultNozzle();
+        Camera bottomCamera = VisionUtils.getBottomVisionCamera();
+        nozzle.pick(Configuration.get().getPart("R0805-1K"));
+        nozzle.moveTo(bottomCamera.getLocation());
+        bottomVisionFrame = bottomCamera.settleAndCaptureMat();
+        nozzle.place();
+
+        bottomVisionPipeline = ReferenceBottomVision.createDefaultPipeline();
+        bottomVisionPipeline.setProperty("camera", bottomCamera);
+        bottomVisionPipeline.setProperty("nozzle", nozzle);
+        bottomVisionPipeline.setProperty("frame", bottomVisionFrame);
+        bottomVisionPipeline.setProductionMode(true);
+
+        Camera topCamera = machine.getDefaultHead().getDefaultCamera();
+        Part fiducial = Configuration.get().getPart("FIDUCIAL-1X2");
+        fiducialFrame = topCamera.settleAndCaptureMat();
+
+        fiducialPipeline = ReferenceFiducialLocator.createDefaultPipeline();
+        fiducialPipeline.setProperty("camera", topCamera);
+        fiducialPipeline.setProperty("part", fiducial);
+        fiducialPipeline.setProperty("package", fiducial.getPackage());
+        fiducialPipeline.setProperty("footprint", fiducial.getPackage().getFootprint());
+        fiducialPipeline.setProperty("frame", fiducialFrame);
+        fiducialPipeline.setProductionMode(true);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        bottomVisionPipeline.close();
+        fiducialPipeline.close();
+        bottomVisionFrame.release();
+        fiducialFrame.release();
+    }
+
+    @Benchmark
+    public Object bottomVision() throws Exception {
+        bottomVisionPipeline.process();
+        return bottomVisionPipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME).model;
+    }
+
+    @Benchmark
+    public Object fiducial() throws Exception {
+        fiducialPipeline.process();
+        return fiducialPipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME).model;
+    }
+}
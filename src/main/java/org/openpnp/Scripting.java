@@ -5,19 +5,26 @@ import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.io.File;
-import java.io.FileReader;
 import java.nio.file.FileSystems;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
@@ -45,6 +52,23 @@ public class Scripting {
     File eventsDirectory;
     WatchService watcher;
 
+    /**
+     * Idle script engines by lower case file extension. An engine is taken from the pool for the
+     * duration of a single execution, so each one is only ever used by one thread at a time.
+     */
+    final Map<String, Queue<PooledEngine>> enginePool = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented whenever the watcher reports a change in a scripts directory. Compiled scripts
+     * and the event index from an earlier generation are discarded.
+     */
+    volatile int generation;
+
+    /**
+     * The event scripts by event name, built from a single listing of the Events directory.
+     */
+    volatile EventIndex eventIndex;
+
     public Scripting() {
         // Collect all the script filename extensions we know how to handle from the list of
         // available scripting engines.
@@ -121,6 +145,7 @@ public class Scripting {
         try {
             watcher = FileSystems.getDefault().newWatchService();
             watchDirectory(getScriptsDirectory());
+            watchDirectory(eventsDirectory);
             Thread thread = new Thread(() -> {
                 for (;;) {
                     try {
@@ -128,6 +153,7 @@ public class Scripting {
                         WatchKey key = watcher.take();
                         key.pollEvents();
                         key.reset();
+                        generation++;
                         // rescan
                         synchronizeMenu(menu, getScriptsDirectory());
                     }
@@ -286,35 +312,169 @@ public class Scripting {
     }
     
     public void execute(File script, Map<String, Object> additionalGlobals) throws Exception {
-        ScriptEngine engine =
-                manager.getEngineByExtension(Files.getFileExtension(script.getName()));
-
-        engine.put("config", Configuration.get());
-        engine.put("machine", Configuration.get().getMachine());
-        engine.put("gui", MainFrame.get());
-        engine.put("scripting", this);
-        engine.put(ScriptEngine.FILENAME, script.getName());
-
-        if (additionalGlobals != null) {
-            for (String name : additionalGlobals.keySet()) {
-                engine.put(name, additionalGlobals.get(name));
+        String extension = Files.getFileExtension(script.getName()).toLowerCase();
+        Queue<PooledEngine> pool =
+                enginePool.computeIfAbsent(extension, k -> new ConcurrentLinkedQueue<>());
+        PooledEngine pooledEngine = pool.poll();
+        if (pooledEngine == null) {
+            ScriptEngine engine = manager.getEngineByExtension(extension);
+            if (engine == null) {
+                throw new Exception("No script engine found for " + script.getName());
             }
+            pooledEngine = new PooledEngine(engine);
         }
-
-        try (FileReader reader = new FileReader(script)) {
-            engine.eval(reader);
+        try {
+            pooledEngine.execute(script, additionalGlobals);
+        }
+        finally {
+            pool.offer(pooledEngine);
         }
     }
 
     public void on(String event, Map<String, Object> globals) throws Exception {
-        Logger.trace("Scripting.on " + event);
-        for (File script : FileUtils.listFiles(eventsDirectory, extensions, false)) {
-            if (!script.isFile()) {
-                continue;
+        Logger.trace("Scripting.on {}", event);
+        List<File> scripts = getEventIndex().get(event);
+        if (scripts == null) {
+            return;
+        }
+        for (File script : scripts) {
+            Logger.trace("Scripting.on found {}", script.getName());
+            execute(script, globals);
+        }
+    }
+
+    private EventIndex getEventIndex() {
+        EventIndex index = eventIndex;
+        if (index == null || !index.isValid()) {
+            index = new EventIndex();
+            eventIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Maps event names to the scripts in the Events directory with that base name. The index is
+     * rebuilt when the watcher reports a change, or when the directory's modification time
+     * changes, which covers scripts being added or removed on platforms where the watcher is
+     * slow or unavailable.
+     */
+    private class EventIndex {
+        final int generation = Scripting.this.generation;
+        final long lastModified = eventsDirectory.lastModified();
+        final Map<String, List<File>> scripts = new HashMap<>();
+
+        EventIndex() {
+            if (!eventsDirectory.isDirectory()) {
+                return;
+            }
+            for (File script : FileUtils.listFiles(eventsDirectory, extensions, false)) {
+                if (!script.isFile()) {
+                    continue;
+                }
+                scripts.computeIfAbsent(FilenameUtils.getBaseName(script.getName()),
+                        k -> new ArrayList<>()).add(script);
+            }
+            for (List<File> files : scripts.values()) {
+                Collections.sort(files);
+            }
+        }
+
+        boolean isValid() {
+            return generation == Scripting.this.generation
+                    && lastModified == eventsDirectory.lastModified();
+        }
+
+        List<File> get(String event) {
+            return scripts.get(event);
+        }
+    }
+
+    /**
+     * A script engine together with the scripts it has compiled. A CompiledScript belongs to the
+     * engine that compiled it, so the cache is kept per engine. Each execution gets fresh engine
+     * scope bindings, so globals don't leak from one script into the next.
+     */
+    private class PooledEngine {
+        final ScriptEngine engine;
+        final Map<File, CachedScript> scripts = new HashMap<>();
+
+        PooledEngine(ScriptEngine engine) {
+            this.engine = engine;
+        }
+
+        void execute(File script, Map<String, Object> additionalGlobals) throws Exception {
+            Bindings bindings = engine.createBindings();
+            bindings.put("config", Configuration.get());
+            bindings.put("machine", Configuration.get().getMachine());
+            bindings.put("gui", MainFrame.get());
+            bindings.put("scripting", Scripting.this);
+            bindings.put(ScriptEngine.FILENAME, script.getName());
+
+            if (additionalGlobals != null) {
+                for (String name : additionalGlobals.keySet()) {
+                    bindings.put(name, additionalGlobals.get(name));
+                }
+            }
+
+            CachedScript cachedScript = scripts.get(script);
+            if (cachedScript == null || !cachedScript.isValid(script)) {
+                cachedScript = new CachedScript(script);
+                scripts.put(script, cachedScript);
+            }
+            if (cachedScript.compiled != null) {
+                cachedScript.compiled.eval(bindings);
             }
-            if (FilenameUtils.getBaseName(script.getName()).equals(event)) {
-                Logger.trace("Scripting.on found " + script.getName());
-                execute(script, globals);
+            else {
+                engine.eval(cachedScript.source, bindings);
+            }
+        }
+
+        /**
+         * The source of a script file, compiled if the engine supports it, and the file
+         * state it was read from.
+         */
+        private class CachedScript {
+            final int generation = Scripting.this.generation;
+            final long lastModified;
+            final long length;
+            final String source;
+            final CompiledScript compiled;
+
+            CachedScript(File file) throws Exception {
+                lastModified = file.lastModified();
+                length = file.length();
+                source = FileUtils.readFileToString(file);
+                // Engines take the file name for error messages and relative module loading from
+                // the engine context at compile time, not from the bindings it is run with.
+                engine.put(ScriptEngine.FILENAME, file.getName());
+                compiled = compile(source);
+            }
+
+            /**
+             * Returns the compiled source, or null if the engine can't compile scripts. Some
+             * engines implement Compilable without supporting it. BeanShell, for one, throws an
+             * Error from compile(), so those scripts are evaluated from source instead.
+             */
+            private CompiledScript compile(String source) throws Exception {
+                if (!(engine instanceof Compilable)) {
+                    return null;
+                }
+                try {
+                    return ((Compilable) engine).compile(source);
+                }
+                catch (VirtualMachineError e) {
+                    throw e;
+                }
+                catch (UnsupportedOperationException | Error e) {
+                    Logger.trace("{} can't compile scripts: {}",
+                            engine.getFactory().getEngineName(), e.getMessage());
+                    return null;
+                }
+            }
+
+            boolean isValid(File file) {
+                return generation == Scripting.this.generation
+                        && lastModified == file.lastModified() && length == file.length();
             }
         }
     }
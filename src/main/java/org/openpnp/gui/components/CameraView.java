@@ -25,6 +25,7 @@ import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Rectangle;
@@ -79,6 +80,21 @@ public class CameraView extends JComponent implements CameraListener {
 
     private static final String DEFAULT_RETICLE_KEY = "DEFAULT_RETICLE_KEY";
 
+    private static final String PREF_MAXIMUM_FPS = "CameraView.maximumFps";
+
+    private static final double DEFAULT_MAXIMUM_FPS = 15;
+
+    /**
+     * Scales frames to the view size for all camera views. A single thread keeps the previews
+     * from taking more than one core away from the job, however many views are open.
+     */
+    private static final ScheduledExecutorService renderExecutor =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "CameraView Render");
+                thread.setDaemon(true);
+                return thread;
+            });
+
     private final static int HANDLE_DIAMETER = 8;
 
     private enum HandlePosition {
@@ -108,6 +124,37 @@ public class CameraView extends JComponent implements CameraListener {
      */
     private BufferedImage lastFrame;
 
+    /**
+     * The maximum rate at which frames are rendered to the view. Frames that arrive faster are
+     * dropped. Zero or less means no limit.
+     */
+    private double maximumFps = DEFAULT_MAXIMUM_FPS;
+
+    private final Object renderLock = new Object();
+
+    /**
+     * The latest frame that has not been rendered yet. Guarded by renderLock, along with
+     * renderScheduled and lastRenderTimeMs.
+     */
+    private BufferedImage pendingFrame;
+    private boolean renderScheduled;
+    private long lastRenderTimeMs;
+
+    /**
+     * The last frame scaled to the view, the part of the view it covers and the scaled image
+     * bounds it was rendered for. paintComponent() only uses it while the scaled bounds still
+     * match. Guarded by this, like the scaling data.
+     */
+    private BufferedImage renderedImage;
+    private Rectangle renderedBounds;
+    private Rectangle renderedScaledBounds;
+
+    /**
+     * The image that the next render is drawn into, swapped with renderedImage when done. Only
+     * used by the render thread.
+     */
+    private BufferedImage renderBuffer;
+
     private LinkedHashMap<Object, Reticle> reticles = new LinkedHashMap<>();
 
     private JPopupMenu popupMenu;
@@ -252,6 +299,7 @@ public class CameraView extends JComponent implements CameraListener {
         this.camera = camera;
         // turn on capture for the new camera
         if (this.camera != null) {
+            maximumFps = prefs.getDouble(getMaximumFpsPrefKey(), DEFAULT_MAXIMUM_FPS);
             this.camera.startContinuousCapture(this);
         }
         // load the reticle pref, if any
@@ -278,6 +326,25 @@ public class CameraView extends JComponent implements CameraListener {
         return camera;
     }
 
+    private String getMaximumFpsPrefKey() {
+        return PREF_MAXIMUM_FPS + "." + camera.getId();
+    }
+
+    public double getMaximumFps() {
+        return maximumFps;
+    }
+
+    /**
+     * Sets the maximum rate at which this view renders frames, independently of the camera's
+     * frame rate. Zero or less renders every frame. The setting is saved per camera.
+     */
+    public void setMaximumFps(double maximumFps) {
+        this.maximumFps = maximumFps;
+        if (camera != null) {
+            prefs.putDouble(getMaximumFpsPrefKey(), maximumFps);
+        }
+    }
+
     public void setShowName(boolean showName) {
         this.showName = showName;
     }
@@ -456,7 +523,82 @@ public class CameraView extends JComponent implements CameraListener {
         }
         fps = 1000.0 / fpsAverage.next(System.currentTimeMillis() - lastFrameReceivedTime);
         lastFrameReceivedTime = System.currentTimeMillis();
-        repaint();
+        scheduleRender(img);
+    }
+
+    /**
+     * Schedules the frame to be scaled to the view on the render thread. If a render is already
+     * scheduled it will use this frame instead of the one it was scheduled for, so only the
+     * latest frame is ever rendered, no more often than maximumFps allows.
+     */
+    private void scheduleRender(BufferedImage frame) {
+        synchronized (renderLock) {
+            pendingFrame = frame;
+            if (renderScheduled) {
+                return;
+            }
+            renderScheduled = true;
+            long delayMs = 0;
+            if (maximumFps > 0) {
+                delayMs = Math.max(0, lastRenderTimeMs + (long) (1000 / maximumFps)
+                        - System.currentTimeMillis());
+            }
+            renderExecutor.schedule(this::renderPending, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void renderPending() {
+        BufferedImage frame;
+        synchronized (renderLock) {
+            frame = pendingFrame;
+            pendingFrame = null;
+            renderScheduled = false;
+            lastRenderTimeMs = System.currentTimeMillis();
+        }
+        try {
+            if (frame != null && render(frame)) {
+                repaint();
+            }
+        }
+        catch (Exception e) {
+            Logger.debug(e);
+        }
+    }
+
+    /**
+     * Scales the visible part of the frame into a compatible image using the current scaling
+     * data and makes it the rendered image. Returns false if there was nothing to render.
+     */
+    private boolean render(BufferedImage frame) {
+        Rectangle scaledBounds;
+        Rectangle bounds;
+        synchronized (this) {
+            Insets ins = getInsets();
+            int width = getWidth() - ins.left - ins.right;
+            int height = getHeight() - ins.top - ins.bottom;
+            scaledBounds = new Rectangle(imageX, imageY, scaledWidth, scaledHeight);
+            bounds = scaledBounds.intersection(new Rectangle(ins.left, ins.top, width, height));
+        }
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if (bounds.isEmpty() || gc == null) {
+            return false;
+        }
+        BufferedImage buffer = renderBuffer;
+        if (buffer == null || buffer.getWidth() != bounds.width
+                || buffer.getHeight() != bounds.height) {
+            buffer = gc.createCompatibleImage(bounds.width, bounds.height);
+        }
+        Graphics2D g = buffer.createGraphics();
+        g.drawImage(frame, scaledBounds.x - bounds.x, scaledBounds.y - bounds.y,
+                scaledBounds.width, scaledBounds.height, null);
+        g.dispose();
+        synchronized (this) {
+            renderBuffer = renderedImage;
+            renderedImage = buffer;
+            renderedBounds = bounds;
+            renderedScaledBounds = scaledBounds;
+        }
+        return true;
     }
 
     /**
@@ -528,7 +670,16 @@ public class CameraView extends JComponent implements CameraListener {
         g2d.fillRect(ins.left, ins.top, width, height);
         if (image != null) {
             // Only render if there is a valid image.
-            g2d.drawImage(lastFrame, imageX, imageY, scaledWidth, scaledHeight, null);
+            if (renderedImage != null && renderedScaledBounds
+                    .equals(new Rectangle(imageX, imageY, scaledWidth, scaledHeight))) {
+                g2d.drawImage(renderedImage, renderedBounds.x, renderedBounds.y, null);
+            }
+            else {
+                // The view was resized or zoomed since the last render, so scale the frame
+                // here once and have it rendered again for the new size.
+                g2d.drawImage(image, imageX, imageY, scaledWidth, scaledHeight, null);
+                scheduleRender(image);
+            }
 
             double c = MainFrame.get().getMachineControls().getSelectedTool().getLocation()
                     .getRotation();
@@ -58,6 +58,7 @@ public class CameraViewPopupMenu extends JPopupMenu {
         chkShowImageInfo.setSelected(cameraView.isShowImageInfo());
         add(chkShowImageInfo);
 
+        add(createMaximumFpsMenu());
 
         if (cameraView.getDefaultReticle() != null) {
             if (cameraView.getDefaultReticle() instanceof RulerReticle) {
@@ -115,6 +116,31 @@ public class CameraViewPopupMenu extends JPopupMenu {
         return menu;
     }
     
+    private JMenu createMaximumFpsMenu() {
+        JMenu menu = new JMenu("Maximum FPS");
+
+        ButtonGroup buttonGroup = new ButtonGroup();
+
+        for (double fps : new double[] {5, 10, 15, 30, 0}) {
+            JMenuItem menuItem =
+                    new JRadioButtonMenuItem(fps > 0 ? String.format("%.0f", fps) : "Unlimited");
+            buttonGroup.add(menuItem);
+            if (cameraView.getMaximumFps() == fps
+                    || (fps <= 0 && cameraView.getMaximumFps() <= 0)) {
+                menuItem.setSelected(true);
+            }
+            menuItem.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    cameraView.setMaximumFps(fps);
+                }
+            });
+            menu.add(menuItem);
+        }
+
+        return menu;
+    }
+
     private JMenuItem createColorMenuItem(String name, Color color, ButtonGroup buttonGroup, CrosshairReticle reticle) {
         JMenuItem menuItem = new JRadioButtonMenuItem(name);
         buttonGroup.add(menuItem);
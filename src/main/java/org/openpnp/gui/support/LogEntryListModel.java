@@ -8,16 +8,25 @@ import org.pmw.tinylog.writers.Writer;
 import javax.swing.*;
 import java.util.*;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * A LogEntry List Model which contains LogEntries from tinylog
+ *
+ * Entries written by tinylog are queued and moved into the model in batches on the event
+ * dispatch thread. Each new entry is only tested against the current filters, and the retained
+ * entries are only filtered again when a filter changes.
  */
 public class LogEntryListModel extends AbstractListModel<LogEntry> implements Writer {
 
-    private List<LogEntry> originalLogEntries = new ArrayList<>();
-    private List<LogEntry> filteredLogEntries = new ArrayList<>(originalLogEntries);
+    private static final int LINE_LIMIT = 10000;
+
+    private static final int UPDATE_INTERVAL_MS = 100;
+
+    private final EntryRing originalLogEntries = new EntryRing(LINE_LIMIT);
+    private final EntryRing filteredLogEntries = new EntryRing(LINE_LIMIT);
+    private final List<LogEntry> pendingLogEntries = new ArrayList<>();
     private HashSet<LogEntryFilter> filters = new HashSet<>();
+    private Predicate<LogEntry> combinedFilter = t -> false;
 
     public static class LogEntryFilter {
         Predicate<LogEntry> filter;
@@ -39,14 +48,17 @@ public class LogEntryListModel extends AbstractListModel<LogEntry> implements Wr
         }
     }
 
-    private static final int LINE_LIMIT = 10000;
+    public LogEntryListModel() {
+        javax.swing.Timer timer = new javax.swing.Timer(UPDATE_INTERVAL_MS, e -> appendPending());
+        timer.start();
+    }
 
     public List<LogEntry> getOriginalLogEntries() {
-        return originalLogEntries;
+        return originalLogEntries.toList();
     }
 
     public List<LogEntry> getFilteredLogEntries() {
-        return filteredLogEntries;
+        return filteredLogEntries.toList();
     }
 
     @Override
@@ -81,29 +93,103 @@ public class LogEntryListModel extends AbstractListModel<LogEntry> implements Wr
 
     @Override
     public void write(LogEntry logEntry) throws Exception {
-        originalLogEntries.add(logEntry);
-        trim();
+        synchronized (pendingLogEntries) {
+            pendingLogEntries.add(logEntry);
+        }
     }
 
     public void clear() {
-        this.originalLogEntries.clear();
-        filter();
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(this::clear);
+            return;
+        }
+        synchronized (pendingLogEntries) {
+            pendingLogEntries.clear();
+        }
+        int size = filteredLogEntries.size();
+        originalLogEntries.clear();
+        filteredLogEntries.clear();
+        if (size > 0) {
+            fireIntervalRemoved(this, 0, size - 1);
+        }
     }
 
+    /**
+     * Applies the current filters to all retained entries. Call this after changing a filter.
+     */
     public void filter() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(this::filter);
+            return;
+        }
         // Reduce all filters to a single one and apply it to our logEntries
-        this.filteredLogEntries = originalLogEntries.stream().filter(
-                filters.stream().map(LogEntryFilter::getFilter).reduce(Predicate::and).orElse(t -> false)
-        ).collect(Collectors.toList());
+        combinedFilter = filters.stream()
+                .map(LogEntryFilter::getFilter)
+                .reduce(Predicate::and)
+                .orElse(t -> false);
 
-        SwingUtilities.invokeLater(() -> fireContentsChanged(this, 0, filteredLogEntries.size() - 1));
+        int oldSize = filteredLogEntries.size();
+        filteredLogEntries.clear();
+        for (int i = 0; i < originalLogEntries.size(); i++) {
+            LogEntry logEntry = originalLogEntries.get(i);
+            if (combinedFilter.test(logEntry)) {
+                filteredLogEntries.add(logEntry);
+            }
+        }
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (filteredLogEntries.size() > 0) {
+            fireIntervalAdded(this, 0, filteredLogEntries.size() - 1);
+        }
     }
 
-    private void trim() {
-        if (originalLogEntries.size() > LINE_LIMIT) {
-            originalLogEntries.subList(0, originalLogEntries.size() - LINE_LIMIT).clear();
+    /**
+     * Moves the queued entries into the model, dropping the oldest entries once LINE_LIMIT is
+     * reached, and fires a single removed and a single added event for the whole batch. Runs on
+     * the event dispatch thread.
+     */
+    private void appendPending() {
+        List<LogEntry> logEntries;
+        synchronized (pendingLogEntries) {
+            if (pendingLogEntries.isEmpty()) {
+                return;
+            }
+            logEntries = new ArrayList<>(pendingLogEntries);
+            pendingLogEntries.clear();
+        }
+        int announced = filteredLogEntries.size();
+        int removed = 0;
+        int added = 0;
+        for (LogEntry logEntry : logEntries) {
+            if (originalLogEntries.size() == LINE_LIMIT) {
+                // The filtered entries are an ordered subset of the original entries, so the
+                // oldest entry can only be the first filtered one.
+                LogEntry oldest = originalLogEntries.removeFirst();
+                if (filteredLogEntries.size() > 0 && filteredLogEntries.get(0) == oldest) {
+                    filteredLogEntries.removeFirst();
+                    if (removed < announced) {
+                        removed++;
+                    }
+                    else {
+                        // The entry was added in this batch and has not been announced yet.
+                        added--;
+                    }
+                }
+            }
+            originalLogEntries.add(logEntry);
+            if (combinedFilter.test(logEntry)) {
+                filteredLogEntries.add(logEntry);
+                added++;
+            }
+        }
+        if (removed > 0) {
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+        if (added > 0) {
+            int size = filteredLogEntries.size();
+            fireIntervalAdded(this, size - added, size - 1);
         }
-        filter();
     }
 
     @Override
@@ -115,4 +201,58 @@ public class LogEntryListModel extends AbstractListModel<LogEntry> implements Wr
     public void close() throws Exception {
 
     }
+
+    /**
+     * A fixed capacity ring buffer of entries with indexed access.
+     */
+    private static class EntryRing {
+        private final LogEntry[] entries;
+        private int head;
+        private int size;
+
+        EntryRing(int capacity) {
+            entries = new LogEntry[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        LogEntry get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return entries[(head + index) % entries.length];
+        }
+
+        void add(LogEntry logEntry) {
+            if (size == entries.length) {
+                removeFirst();
+            }
+            entries[(head + size) % entries.length] = logEntry;
+            size++;
+        }
+
+        LogEntry removeFirst() {
+            LogEntry logEntry = entries[head];
+            entries[head] = null;
+            head = (head + 1) % entries.length;
+            size--;
+            return logEntry;
+        }
+
+        void clear() {
+            Arrays.fill(entries, null);
+            head = 0;
+            size = 0;
+        }
+
+        List<LogEntry> toList() {
+            List<LogEntry> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(get(i));
+            }
+            return list;
+        }
+    }
 }
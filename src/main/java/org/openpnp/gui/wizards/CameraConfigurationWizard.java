@@ -27,6 +27,7 @@ import java.util.Locale;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -39,6 +40,7 @@ import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.components.CameraView;
 import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
+import org.openpnp.gui.support.IntegerConverter;
 import org.openpnp.gui.support.LengthConverter;
 import org.openpnp.gui.support.LongConverter;
 import org.openpnp.gui.support.MutableLocationProxy;
@@ -155,7 +157,9 @@ public class CameraConfigurationWizard extends AbstractConfigurationWizard {
         panelVision.setLayout(new FormLayout(
                 new ColumnSpec[] {FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,
                         FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,},
-                new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,}));
+                new RowSpec[] {FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,}));
 
         lblSettleTimems = new JLabel("Settle Time (ms)");
         panelVision.add(lblSettleTimems, "2, 2, right, default");
@@ -163,12 +167,32 @@ public class CameraConfigurationWizard extends AbstractConfigurationWizard {
         textFieldSettleTime = new JTextField();
         panelVision.add(textFieldSettleTime, "4, 2, fill, default");
         textFieldSettleTime.setColumns(10);
+
+        lblMotionAwareCapture = new JLabel("Motion Aware Capture");
+        lblMotionAwareCapture.setToolTipText(
+                "<html>While the camera view is running, use the first frame exposed after motion<br/>"
+                        + "completes instead of waiting for the settle time.</html>");
+        panelVision.add(lblMotionAwareCapture, "2, 4, right, default");
+
+        chckbxMotionAwareCapture = new JCheckBox("");
+        panelVision.add(chckbxMotionAwareCapture, "4, 4");
+
+        lblMotionAwareSkipFrames = new JLabel("Motion Aware Skip Frames");
+        lblMotionAwareSkipFrames.setToolTipText(
+                "<html>Number of frames received after motion completes that are discarded,<br/>"
+                        + "because the camera or driver may have buffered them during the motion.</html>");
+        panelVision.add(lblMotionAwareSkipFrames, "2, 6, right, default");
+
+        textFieldMotionAwareSkipFrames = new JTextField();
+        panelVision.add(textFieldMotionAwareSkipFrames, "4, 6, fill, default");
+        textFieldMotionAwareSkipFrames.setColumns(10);
     }
 
     @Override
     public void createBindings() {
         LengthConverter lengthConverter = new LengthConverter(uppFormat);
         LongConverter longConverter = new LongConverter();
+        IntegerConverter intConverter = new IntegerConverter();
 
         addWrappedBinding(camera, "name", nameTf, "text");
         addWrappedBinding(camera, "looking", lookingCb, "selectedItem");
@@ -179,6 +203,9 @@ public class CameraConfigurationWizard extends AbstractConfigurationWizard {
         addWrappedBinding(unitsPerPixel, "lengthY", textFieldUppY, "text", lengthConverter);
 
         addWrappedBinding(camera, "settleTimeMs", textFieldSettleTime, "text", longConverter);
+        addWrappedBinding(camera, "motionAwareCapture", chckbxMotionAwareCapture, "selected");
+        addWrappedBinding(camera, "motionAwareSkipFrames", textFieldMotionAwareSkipFrames, "text",
+                intConverter);
 
         ComponentDecorators.decorateWithAutoSelect(textFieldUppX);
         ComponentDecorators.decorateWithAutoSelect(textFieldUppY);
@@ -189,6 +216,7 @@ public class CameraConfigurationWizard extends AbstractConfigurationWizard {
         ComponentDecorators.decorateWithAutoSelect(textFieldWidth);
         ComponentDecorators.decorateWithAutoSelect(textFieldHeight);
         ComponentDecorators.decorateWithAutoSelect(textFieldSettleTime);
+        ComponentDecorators.decorateWithAutoSelect(textFieldMotionAwareSkipFrames);
     }
 
     private Action measureAction = new AbstractAction("Measure") {
@@ -237,6 +265,10 @@ public class CameraConfigurationWizard extends AbstractConfigurationWizard {
     private JPanel panelVision;
     private JLabel lblSettleTimems;
     private JTextField textFieldSettleTime;
+    private JLabel lblMotionAwareCapture;
+    private JCheckBox chckbxMotionAwareCapture;
+    private JLabel lblMotionAwareSkipFrames;
+    private JTextField textFieldMotionAwareSkipFrames;
     private JPanel panel;
     private JLabel lblName;
     private JLabel lblLooking;
@@ -1,5 +1,6 @@
 package org.openpnp.machine.neoden4;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
@@ -17,6 +18,7 @@ import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Named;
 import org.openpnp.spi.Nozzle;
+import org.openpnp.util.LogUtils;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Root;
@@ -111,7 +113,27 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
     @Attribute(required = false)
     protected double scaleFactorY = 1.04947526;
 
+    /**
+     * Time between status queries while waiting for a move to finish. Zero queries again as
+     * soon as the previous answer arrives.
+     */
+    @Attribute(required = false)
+    protected int statusPollIntervalMilliseconds = 5;
+
+    /**
+     * Sends the rotation of a move before its XY move instead of after it, so the nozzle can
+     * rotate while the head travels. Off by default, since it changes the order of the motion
+     * the machine sees and has not been verified on every controller firmware.
+     */
+    @Attribute(required = false)
+    protected boolean rotateBeforeXyMove = false;
+
     private boolean connected;
+
+    /**
+     * The last move speed sent, so it is only sent again when it changes.
+     */
+    private double moveSpeed = Double.NaN;
     private Set<Nozzle> pickedNozzles = new HashSet<>();
 
 
@@ -209,6 +231,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
         getCommunications().connect();
 
         connected = false;
+        moveSpeed = Double.NaN;
 
         // Disable the machine
         setEnabled(false);
@@ -239,7 +262,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
         while (true) {
             try {
                 int d = getCommunications().read();
-                if (log) {
+                if (log && LogUtils.isTraceEnabled()) {
                     Logger.trace(String.format("< %02x", d & 0xff));
                 }
                 return d;
@@ -256,39 +279,56 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
     
     void write(int d, boolean log) throws Exception {
         d = d & 0xff;
-        if (log) {
+        if (log && LogUtils.isTraceEnabled()) {
             Logger.trace(String.format("> %02x", d));
         }
         getCommunications().write(d);
     }
     
+    /**
+     * Writes the payload followed by its checksum as a single frame, in one write.
+     */
     void writeWithChecksum(byte[] b) throws Exception {
-        StringBuffer sb = new StringBuffer();
-        for (int i = 0; i < b.length; i++) {
-            sb.append(String.format("%02x", b[i] & 0xff));
+        byte[] frame = Arrays.copyOf(b, b.length + 1);
+        frame[b.length] = (byte) (checksum(b) & 0xff);
+        if (LogUtils.isTraceEnabled()) {
+            Logger.trace("> " + toHex(frame));
         }
-        sb.append(String.format("%02x", checksum(b) & 0xff));
-        Logger.trace("> " + sb.toString());
-        for (int i = 0; i < b.length; i++) {
-            write(b[i], false);
-        }
-        getCommunications().write(checksum(b) & 0xff);
+        getCommunications().write(frame);
     }
     
+    /**
+     * Reads a payload of the given length followed by its checksum, taking as many bytes at a
+     * time as have been received.
+     */
     byte[] readWithChecksum(int length) throws Exception {
-        byte[] b = new byte[length];
-        for (int i = 0; i < length; i++) {
-            b[i] = (byte) (read(false) & 0xff);
+        byte[] frame = new byte[length + 1];
+        int position = 0;
+        while (position < frame.length) {
+            try {
+                int l = getCommunications().read(frame, position, frame.length - position);
+                if (l == -1) {
+                    throw new Exception("Connection closed.");
+                }
+                position += l;
+            }
+            catch (TimeoutException e) {
+                continue;
+            }
         }
-        int checksum = read(false);
         // TODO STOPSHIP verify checksum
-        StringBuffer sb = new StringBuffer();
+        if (LogUtils.isTraceEnabled()) {
+            Logger.trace("< " + toHex(frame));
+        }
+        return Arrays.copyOf(frame, length);
+    }
+    
+    static String toHex(byte[] b) {
+        StringBuilder sb = new StringBuilder();
         for (int i = 0; i < b.length; i++) {
             sb.append(String.format("%02x", b[i] & 0xff));
         }
-        sb.append(String.format("%02x", checksum & 0xff));
-        Logger.trace("< " + sb.toString());
-        return b;
+        return sb.toString();
     }
     
     int expect(int expected) throws Exception {
@@ -357,7 +397,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
         
         pollFor(0x07, 0x43);
         
-        if (! waitForStatusReady(100, 30000)) {
+        if (! waitForStatusReady(30000)) {
             throw new Exception("home timeout while waiting for status==ready");
         }
 
@@ -398,7 +438,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
       
         pollFor(0x08, 0x4d);
 
-        if (! waitForStatusReady(100, 30000)) {
+        if (! waitForStatusReady(30000)) {
             throw new Exception("moveXy timeout while waiting for status==ready");
         }
     }
@@ -420,16 +460,20 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
         return false;
     }
 
-    private Boolean waitForStatusReady(int sleepMilliS, int maxMilliS) throws Exception {
-        int totalWaitMilliS = 0;
-        do {
-            Thread.sleep(sleepMilliS);
-            totalWaitMilliS += sleepMilliS;
-
-            if (totalWaitMilliS >= maxMilliS) {
+    /**
+     * Queries the status until the machine reports ready, every statusPollIntervalMilliseconds,
+     * starting right away. Returns false if it is not ready within maxMilliS.
+     */
+    private Boolean waitForStatusReady(int maxMilliS) throws Exception {
+        long t = System.currentTimeMillis();
+        while (! isStatusReady()) {
+            if (System.currentTimeMillis() - t >= maxMilliS) {
                 return false;
             }
-        } while (! isStatusReady());
+            if (statusPollIntervalMilliseconds > 0) {
+                Thread.sleep(statusPollIntervalMilliseconds);
+            }
+        }
         return true;
     }
 
@@ -471,6 +515,9 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
     }
 
     private void setMoveSpeed(double speed) throws Exception {
+        if (speed == moveSpeed) {
+            return;
+        }
         write(0x46);
         expect(0x0a);
         
@@ -485,6 +532,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
         writeWithChecksum(b);
         
         pollFor(0x06, 0x42);
+        moveSpeed = speed;
     }
 
     @Override
@@ -502,7 +550,35 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
         // coordinate.
         x = Double.isNaN(x) ? this.x : x;
         y = Double.isNaN(y) ? this.y : y;
-        if (x != this.x || y != this.y) {
+        boolean moveXy = (x != this.x || y != this.y);
+
+        double minZ = 0.;
+        double maxZ = -13.;
+
+        int nozzle = getNozzleNumber(hm);
+        boolean moveZ = false;
+        boolean moveC = false;
+        if (nozzle != 0) {
+            z = Double.isNaN(z) ? getZ(nozzle) : z;
+            z = Math.min(z, minZ);
+            z = Math.max(z, maxZ);
+            moveZ = (z != getZ(nozzle));
+
+            c = Double.isNaN(c) ? getC(nozzle) : c;
+            c = Math.max(c, -180.);
+            c = Math.min(c, 180.);
+            moveC = (c != getC(nozzle));
+        }
+
+        // Optionally send the rotation first, so it can happen while the head travels. Otherwise
+        // the order is XY, Z, then C.
+        if (rotateBeforeXyMove && moveXy && moveC) {
+            moveC(nozzle, c);
+            setC(nozzle, c);
+            moveC = false;
+        }
+
+        if (moveXy) {
             setMoveSpeed(speed);
             moveXy(x, y);
             
@@ -510,77 +586,91 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
             this.y = y;
         }
 
-        double minZ = 0.;
-        double maxZ = -13.;
+        if (moveZ) {
+            moveZ(nozzle, z);
+            setZ(nozzle, z);
+        }
+
+        if (moveC) {
+            moveC(nozzle, c);
+            setC(nozzle, c);
+        }
+    }
 
+    /**
+     * Returns the NeoDen nozzle number, 1 to 4, of the head mountable, or 0 if it is not a
+     * nozzle.
+     */
+    private int getNozzleNumber(ReferenceHeadMountable hm) {
         switch (hm.getId()) {
             case "N1":
-                z = Double.isNaN(z) ? this.z1 : z;
-                z = Math.min(z, minZ);
-                z = Math.max(z, maxZ);
-                if (z != this.z1) {
-                    moveZ(1, z);
-                    this.z1 = z;
-                }
-                
-                c = Double.isNaN(c) ? this.c1 : c;
-                c = Math.max(c, -180.);
-                c = Math.min(c, 180.);                
-                if (c != this.c1) {
-                    moveC(1, c);
-                    this.c1 = c;
-                }
-                break;
+                return 1;
             case "N2":
-                z = Double.isNaN(z) ? this.z2 : z;
-                z = Math.min(z, minZ);
-                z = Math.max(z, maxZ);
-                if (z != this.z2) {
-                    moveZ(2, z);
-                    this.z2 = z;
-                }
-                
-                c = Double.isNaN(c) ? this.c2 : c;
-                c = Math.max(c, -180.);
-                c = Math.min(c, 180.);                
-                if (c != this.c2) {
-                    moveC(2, c);
-                    this.c2 = c;
-                }
-                break;
+                return 2;
             case "N3":
-                z = Double.isNaN(z) ? this.z3 : z;
-                z = Math.min(z, minZ);
-                z = Math.max(z, maxZ);
-                if (z != this.z3) {
-                    moveZ(3, z);
-                    this.z3 = z;
-                }
-                
-                c = Double.isNaN(c) ? this.c3 : c;
-                c = Math.max(c, -180.);
-                c = Math.min(c, 180.);                
-                if (c != this.c3) {
-                    moveC(3, c);
-                    this.c3 = c;
-                }
-                break;
+                return 3;
             case "N4":
-                z = Double.isNaN(z) ? this.z4 : z;
-                z = Math.min(z, minZ);
-                z = Math.max(z, maxZ);
-                if (z != this.z4) {
-                    moveZ(4, z);
-                    this.z4 = z;
-                }
-                
-                c = Double.isNaN(c) ? this.c4 : c;
-                c = Math.max(c, -180.);
-                c = Math.min(c, 180.);                
-                if (c != this.c4) {
-                    moveC(4, c);
-                    this.c4 = c;
-                }
+                return 4;
+        }
+        return 0;
+    }
+
+    private double getZ(int nozzle) {
+        switch (nozzle) {
+            case 1:
+                return z1;
+            case 2:
+                return z2;
+            case 3:
+                return z3;
+            default:
+                return z4;
+        }
+    }
+
+    private void setZ(int nozzle, double z) {
+        switch (nozzle) {
+            case 1:
+                z1 = z;
+                break;
+            case 2:
+                z2 = z;
+                break;
+            case 3:
+                z3 = z;
+                break;
+            default:
+                z4 = z;
+                break;
+        }
+    }
+
+    private double getC(int nozzle) {
+        switch (nozzle) {
+            case 1:
+                return c1;
+            case 2:
+                return c2;
+            case 3:
+                return c3;
+            default:
+                return c4;
+        }
+    }
+
+    private void setC(int nozzle, double c) {
+        switch (nozzle) {
+            case 1:
+                c1 = c;
+                break;
+            case 2:
+                c2 = c;
+                break;
+            case 3:
+                c3 = c;
+                break;
+            default:
+                c4 = c;
                 break;
         }
     }
@@ -931,4 +1021,20 @@ public class NeoDen4Driver extends AbstractReferenceDriver implements Named {
     public void setScaleFactorY(double scaleFactorY) {
         this.scaleFactorY = scaleFactorY;
     }
+
+    public int getStatusPollIntervalMilliseconds() {
+        return statusPollIntervalMilliseconds;
+    }
+
+    public void setStatusPollIntervalMilliseconds(int statusPollIntervalMilliseconds) {
+        this.statusPollIntervalMilliseconds = statusPollIntervalMilliseconds;
+    }
+
+    public boolean isRotateBeforeXyMove() {
+        return rotateBeforeXyMove;
+    }
+
+    public void setRotateBeforeXyMove(boolean rotateBeforeXyMove) {
+        this.rotateBeforeXyMove = rotateBeforeXyMove;
+    }
 }
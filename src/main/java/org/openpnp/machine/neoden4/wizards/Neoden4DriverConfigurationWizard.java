@@ -22,6 +22,7 @@ package org.openpnp.machine.neoden4.wizards;
 
 import java.awt.Color;
 
+import javax.swing.JCheckBox;
 import javax.swing.SwingConstants;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -48,6 +49,8 @@ public class Neoden4DriverConfigurationWizard extends AbstractConfigurationWizar
     private JTextField homeCoordinateYTextField;
     private JTextField scaleFactorXTextField;
     private JTextField scaleFactorYTextField;
+    private JTextField statusPollIntervalTextField;
+    private JCheckBox rotateBeforeXyMoveCheckBox;
 
     public Neoden4DriverConfigurationWizard(NeoDen4Driver driver) {
         this.driver = driver;
@@ -72,6 +75,10 @@ public class Neoden4DriverConfigurationWizard extends AbstractConfigurationWizar
                     FormSpecs.DEFAULT_ROWSPEC,
                     FormSpecs.RELATED_GAP_ROWSPEC, 
                     FormSpecs.DEFAULT_ROWSPEC,
+                    FormSpecs.RELATED_GAP_ROWSPEC, 
+                    FormSpecs.DEFAULT_ROWSPEC,
+                    FormSpecs.RELATED_GAP_ROWSPEC, 
+                    FormSpecs.DEFAULT_ROWSPEC,
                     FormSpecs.RELATED_GAP_ROWSPEC, }));
 
         JLabel lblHomeCoordinateX = new JLabel("Home Coordinate X");
@@ -102,6 +109,19 @@ public class Neoden4DriverConfigurationWizard extends AbstractConfigurationWizar
         scaleFactorYTextField.setColumns(10);
         panelMachineDetails.add(scaleFactorYTextField, "4, 8, fill, default");
 
+        JLabel lblStatusPollInterval = new JLabel("Status Poll Interval (ms)");
+        panelMachineDetails.add(lblStatusPollInterval, "2, 10, right, default");
+
+        statusPollIntervalTextField = new JTextField();
+        statusPollIntervalTextField.setColumns(10);
+        panelMachineDetails.add(statusPollIntervalTextField, "4, 10, fill, default");
+
+        JLabel lblRotateBeforeXyMove = new JLabel("Rotate Before XY Move");
+        panelMachineDetails.add(lblRotateBeforeXyMove, "2, 12, right, default");
+
+        rotateBeforeXyMoveCheckBox = new JCheckBox("");
+        panelMachineDetails.add(rotateBeforeXyMoveCheckBox, "4, 12");
+
     }
 
     @Override
@@ -111,5 +131,7 @@ public class Neoden4DriverConfigurationWizard extends AbstractConfigurationWizar
         addWrappedBinding(driver, "homeCoordinateY", homeCoordinateYTextField, "text", doubleConverter);
         addWrappedBinding(driver, "scaleFactorX", scaleFactorXTextField, "text", doubleConverter);
         addWrappedBinding(driver, "scaleFactorY", scaleFactorYTextField, "text", doubleConverter);
+        addWrappedBinding(driver, "statusPollIntervalMilliseconds", statusPollIntervalTextField, "text", new IntegerConverter());
+        addWrappedBinding(driver, "rotateBeforeXyMove", rotateBeforeXyMoveCheckBox, "selected");
     }
 }
\ No newline at end of file
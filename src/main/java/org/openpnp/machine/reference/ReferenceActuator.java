@@ -98,6 +98,26 @@ public class ReferenceActuator extends AbstractActuator implements ReferenceHead
         getMachine().fireMachineHeadActivity(head);
     }
     
+    /**
+     * Actuates without waiting for the head to stop moving first. See
+     * ReferenceDriver.actuateQueued(ReferenceActuator, boolean).
+     */
+    public void actuateQueued(boolean on) throws Exception {
+        Logger.debug("{}.actuateQueued({})", getName(), on);
+        getDriver().actuateQueued(this, on);
+        getMachine().fireMachineHeadActivity(head);
+    }
+
+    /**
+     * Actuates without waiting for the head to stop moving first. See
+     * ReferenceDriver.actuateQueued(ReferenceActuator, double).
+     */
+    public void actuateQueued(double value) throws Exception {
+        Logger.debug("{}.actuateQueued({})", getName(), value);
+        getDriver().actuateQueued(this, value);
+        getMachine().fireMachineHeadActivity(head);
+    }
+    
     @Override
     public String read() throws Exception {
         String value = getDriver().actuatorRead(this);
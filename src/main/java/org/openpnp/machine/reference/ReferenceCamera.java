@@ -24,8 +24,6 @@ import java.awt.Graphics2D;
 import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -119,6 +117,22 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     private Mat undistortionMap1;
     private Mat undistortionMap2;
 
+    /**
+     * All of the geometric transforms combined into a single remap, so each frame is only
+     * warped once. Built by buildTransformMap() and rebuilt when a transform setting or the lens
+     * calibration has changed, or the raw image size is different.
+     */
+    private Mat transformMapX;
+    private Mat transformMapY;
+    private volatile boolean transformMapDirty = true;
+    private Size transformMapRawSize;
+    private int transformMapCalibrationModificationCount;
+
+    /**
+     * Reused destination for transforms whose result is converted to a BufferedImage.
+     */
+    private Mat transformBuffer;
+
     private LensCalibration lensCalibration;
     
     public ReferenceCamera() {
@@ -130,24 +144,48 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
      */
     @Override
     public BufferedImage capture() {
+        fireCameraEvent("Camera.BeforeCapture");
+        BufferedImage image = captureForPreview();
+        fireCameraEvent("Camera.AfterCapture");
+        return image;
+    }
+    
+    /**
+     * Same as capture(), but the image stays a Mat from the raw capture through the local
+     * transformations.
+     */
+    @Override
+    public Mat captureMat() {
+        fireCameraEvent("Camera.BeforeCapture");
+        Mat mat = transformMat(captureRawMat());
+        fireCameraEvent("Camera.AfterCapture");
+        return mat;
+    }
+    
+    /**
+     * Waits for the driver to finish any queued motion before settling, since the driver may
+     * return from moveTo() before the move is complete.
+     */
+    @Override
+    public BufferedImage settleAndCapture() {
         try {
-            Map<String, Object> globals = new HashMap<>();
-            globals.put("camera", this);
-            Configuration.get().getScripting().on("Camera.BeforeCapture", globals);
+            getDriver().waitForCompletion();
         }
         catch (Exception e) {
             Logger.warn(e);
         }
-        BufferedImage image = captureForPreview();
+        return super.settleAndCapture();
+    }
+    
+    @Override
+    public Mat settleAndCaptureMat() {
         try {
-            Map<String, Object> globals = new HashMap<>();
-            globals.put("camera", this);
-            Configuration.get().getScripting().on("Camera.AfterCapture", globals);
+            getDriver().waitForCompletion();
         }
         catch (Exception e) {
             Logger.warn(e);
         }
-        return image;
+        return super.settleAndCaptureMat();
     }
     
     /**
@@ -167,6 +205,14 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
         return safeInternalCapture();
     }
     
+    /**
+     * Same as captureRaw() but returns a Mat. Cameras that capture into a Mat should override
+     * this to avoid the conversion.
+     */
+    protected Mat captureRawMat() {
+        return OpenCvUtils.toMat(captureRaw());
+    }
+    
     protected abstract BufferedImage internalCapture();
     
     /**
@@ -252,6 +298,7 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     }
 
     protected void viewHasChanged() {
+        transformMapDirty = true;
         if (this.getLooking() == Looking.Up) {
             // Changing an up-looking camera view invalidates the nozzle tip calibration.
             ReferenceNozzleTipCalibration.resetAllNozzleTips();
@@ -345,12 +392,237 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
 
     public void setDeinterlace(boolean deinterlace) {
         this.deinterlace = deinterlace;
+        transformMapDirty = true;
     }
 
-    // TODO Optimization: We could skip the convert to and from Mat if no transforms are needed.
     protected BufferedImage transformImage(BufferedImage image) {
+        // Skip the convert to and from Mat if no transforms are needed, but only for the image
+        // types that the conversion would not have changed.
+        if (!hasTransforms() && (image.getType() == BufferedImage.TYPE_3BYTE_BGR
+                || image.getType() == BufferedImage.TYPE_BYTE_GRAY)) {
+            width = image.getWidth();
+            height = image.getHeight();
+            return image;
+        }
+
         Mat mat = OpenCvUtils.toMat(image);
+        if (calibrating) {
+            mat = transformMatStepwise(mat);
+            image = OpenCvUtils.toBufferedImage(mat);
+        }
+        else {
+            image = remapToImage(mat);
+        }
+        mat.release();
+        return image;
+    }
+    
+    /**
+     * Applies the local transformations to the Mat and returns the result, which may be a
+     * different Mat. The Mat passed in is released if it is not returned.
+     */
+    protected Mat transformMat(Mat mat) {
+        if (calibrating) {
+            return transformMatStepwise(mat);
+        }
+        if (!hasTransforms()) {
+            width = mat.cols();
+            height = mat.rows();
+            return mat;
+        }
+        Mat dst = new Mat();
+        remap(mat, dst);
+        mat.release();
+        return dst;
+    }
+    
+    private synchronized BufferedImage remapToImage(Mat mat) {
+        if (transformBuffer == null) {
+            transformBuffer = new Mat();
+        }
+        remap(mat, transformBuffer);
+        return OpenCvUtils.toBufferedImage(transformBuffer);
+    }
+    
+    private synchronized void remap(Mat mat, Mat dst) {
+        Size rawSize = mat.size();
+        int calibrationModificationCount = calibration.getModificationCount();
+        if (transformMapDirty || !rawSize.equals(transformMapRawSize)
+                || calibrationModificationCount != transformMapCalibrationModificationCount) {
+            long t = System.currentTimeMillis();
+            transformMapDirty = false;
+            buildTransformMap(rawSize);
+            transformMapRawSize = rawSize;
+            transformMapCalibrationModificationCount = calibrationModificationCount;
+            Logger.debug("{} built transform map in {} ms.", getName(), System.currentTimeMillis() - t);
+        }
+        Imgproc.remap(mat, dst, transformMapX, transformMapY, Imgproc.INTER_LINEAR);
+        width = dst.cols();
+        height = dst.rows();
+    }
+    
+    /**
+     * Builds transformMapX and transformMapY so that a single remap of a raw image of the given
+     * size gives the same result as transformMatStepwise() without calibration. Each output
+     * pixel is traced back through the transforms, in reverse order, to the raw image
+     * coordinate it comes from.
+     */
+    private void buildTransformMap(Size rawSize) {
+        int rawWidth = (int) rawSize.width;
+        int rawHeight = (int) rawSize.height;
+
+        // Work out the size of the image after each transform, and the parameters needed to
+        // reverse it.
+        int cropX = 0;
+        int cropY = 0;
+        int w = rawWidth;
+        int h = rawHeight;
+        if (cropWidth != 0 || cropHeight != 0) {
+            int cw = (cropWidth != 0) ? cropWidth : w;
+            int ch = (cropHeight != 0) ? cropHeight : h;
+            cropX = (int) ((w / 2D) - (cw / 2));
+            cropY = (int) ((h / 2D) - (ch / 2));
+            w = cw;
+            h = ch;
+        }
+        int croppedWidth = w;
+        int croppedHeight = h;
+
+        float[] undistortX = null;
+        float[] undistortY = null;
+        if (calibration.isEnabled()) {
+            Mat map1 = new Mat();
+            Mat map2 = new Mat();
+            Mat rectification = Mat.eye(3, 3, CvType.CV_32F);
+            Calib3d.initUndistortRectifyMap(calibration.getCameraMatrixMat(),
+                    calibration.getDistortionCoefficientsMat(), rectification,
+                    calibration.getCameraMatrixMat(), new Size(w, h), CvType.CV_32FC1, map1,
+                    map2);
+            rectification.release();
+            undistortX = new float[w * h];
+            undistortY = new float[w * h];
+            map1.get(0, 0, undistortX);
+            map2.get(0, 0, undistortY);
+            map1.release();
+            map2.release();
+        }
+
+        double scaleX = 1;
+        double scaleY = 1;
+        boolean scaled = scaleWidth != 0 && scaleHeight != 0;
+        if (scaled) {
+            scaleX = (double) w / scaleWidth;
+            scaleY = (double) h / scaleHeight;
+            w = scaleWidth;
+            h = scaleHeight;
+        }
+
+        double[] rotationInverse = null;
+        if (rotation != 0D) {
+            Point center = new Point(w / 2D, h / 2D);
+            Mat mapMatrix = Imgproc.getRotationMatrix2D(center, rotation, 1.0);
+            Rect bbox = new RotatedRect(center, new Size(w, h), rotation).boundingRect();
+            double[] cx = mapMatrix.get(0, 2);
+            double[] cy = mapMatrix.get(1, 2);
+            cx[0] += bbox.width / 2D - center.x;
+            cy[0] += bbox.height / 2D - center.y;
+            mapMatrix.put(0, 2, cx);
+            mapMatrix.put(1, 2, cy);
+            Mat inverse = new Mat();
+            Imgproc.invertAffineTransform(mapMatrix, inverse);
+            rotationInverse = new double[6];
+            inverse.get(0, 0, rotationInverse);
+            inverse.release();
+            mapMatrix.release();
+            w = bbox.width;
+            h = bbox.height;
+        }
+
+        // Offset, deinterlace and flip don't change the size.
+        float[] mapX = new float[w * h];
+        float[] mapY = new float[w * h];
+        int half = h / 2;
+        for (int v = 0; v < h; v++) {
+            for (int u = 0; u < w; u++) {
+                int i = v * w + u;
+                // Flip
+                int fu = flipY ? w - 1 - u : u;
+                int fv = flipX ? h - 1 - v : v;
+                // Deinterlace
+                if (deinterlace) {
+                    if (fv >= half * 2) {
+                        mapX[i] = -1;
+                        mapY[i] = -1;
+                        continue;
+                    }
+                    fv = (fv % 2 == 0) ? fv / 2 : fv / 2 + half;
+                }
+                // Offset
+                double x = fu - offsetX;
+                double y = fv - offsetY;
+                // Rotate
+                if (rotationInverse != null) {
+                    double rx = rotationInverse[0] * x + rotationInverse[1] * y + rotationInverse[2];
+                    double ry = rotationInverse[3] * x + rotationInverse[4] * y + rotationInverse[5];
+                    x = rx;
+                    y = ry;
+                }
+                // Scale
+                if (scaled) {
+                    x = (x + 0.5) * scaleX - 0.5;
+                    y = (y + 0.5) * scaleY - 0.5;
+                }
+                // Undistort
+                if (undistortX != null) {
+                    if (x < 0 || y < 0 || x > croppedWidth - 1 || y > croppedHeight - 1) {
+                        mapX[i] = -1;
+                        mapY[i] = -1;
+                        continue;
+                    }
+                    double ux = interpolate(undistortX, croppedWidth, croppedHeight, x, y);
+                    double uy = interpolate(undistortY, croppedWidth, croppedHeight, x, y);
+                    x = ux;
+                    y = uy;
+                }
+                // Crop
+                mapX[i] = (float) (x + cropX);
+                mapY[i] = (float) (y + cropY);
+            }
+        }
 
+        if (transformMapX != null) {
+            transformMapX.release();
+            transformMapY.release();
+        }
+        transformMapX = new Mat(h, w, CvType.CV_32FC1);
+        transformMapY = new Mat(h, w, CvType.CV_32FC1);
+        transformMapX.put(0, 0, mapX);
+        transformMapY.put(0, 0, mapY);
+    }
+    
+    /**
+     * Bilinear interpolation of a width by height map at x, y, which must be inside the map.
+     */
+    private static double interpolate(float[] map, int width, int height, double x, double y) {
+        int x0 = Math.min((int) x, width - 2);
+        int y0 = Math.min((int) y, height - 2);
+        if (x0 < 0 || y0 < 0) {
+            return map[Math.max(y0, 0) * width + Math.max(x0, 0)];
+        }
+        double fx = x - x0;
+        double fy = y - y0;
+        int i = y0 * width + x0;
+        double top = map[i] * (1 - fx) + map[i + 1] * fx;
+        double bottom = map[i + width] * (1 - fx) + map[i + width + 1] * fx;
+        return top * (1 - fy) + bottom * fy;
+    }
+    
+    /**
+     * Applies the local transformations one at a time. This is only used while collecting
+     * lens calibration images, since the calibration has to see the image between the crop
+     * and the undistort.
+     */
+    private Mat transformMatStepwise(Mat mat) {
         mat = crop(mat);
 
         mat = calibrate(mat);
@@ -377,15 +649,20 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
             Core.flip(mat, mat, flipCode);
         }
 
-        image = OpenCvUtils.toBufferedImage(mat);
-        mat.release();
-        
-        if (image != null) { 
-            // save the new image dimensions
-            width = image.getWidth();
-            height = image.getHeight();
-        }
-        return image;
+        // save the new image dimensions
+        width = mat.cols();
+        height = mat.rows();
+        return mat;
+    }
+    
+    /**
+     * Returns true if any of the local transformations are enabled, or the lens calibration is
+     * collecting images.
+     */
+    protected boolean hasTransforms() {
+        return cropWidth != 0 || cropHeight != 0 || calibrating || calibration.isEnabled()
+                || (scaleWidth != 0 && scaleHeight != 0) || rotation != 0 || offsetX != 0
+                || offsetY != 0 || deinterlace || flipX || flipY;
     }
 
     private Mat crop(Mat mat) {
@@ -643,6 +920,12 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
     }
 
     public static class LensCalibrationParams extends AbstractModelObject {
+        /**
+         * Incremented whenever the calibration changes, so that cameras know to rebuild their
+         * transform maps.
+         */
+        private int modificationCount;
+
         @Attribute(required = false)
         private boolean enabled = false;
 
@@ -659,6 +942,7 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
         private void commit() {
             cameraMatrix.put(0, 0, cameraMatrixArr);
             distortionCoefficients.put(0, 0, distortionCoefficientsArr);
+            modificationCount++;
         }
 
         @Persist
@@ -674,6 +958,7 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
         public void setEnabled(boolean enabled) {
             Object oldValue = this.isEnabled();
             this.enabled = enabled;
+            modificationCount++;
             firePropertyChange("enabled", oldValue, enabled);
         }
 
@@ -683,6 +968,7 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
 
         public void setCameraMatrixMat(Mat cameraMatrix) {
             this.cameraMatrix = cameraMatrix.clone();
+            modificationCount++;
         }
 
         public Mat getDistortionCoefficientsMat() {
@@ -691,6 +977,11 @@ public abstract class ReferenceCamera extends AbstractCamera implements Referenc
 
         public void setDistortionCoefficientsMat(Mat distortionCoefficients) {
             this.distortionCoefficients = distortionCoefficients.clone();
+            modificationCount++;
+        }
+
+        public int getModificationCount() {
+            return modificationCount;
         }
     }
 }
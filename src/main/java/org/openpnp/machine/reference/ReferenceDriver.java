@@ -20,6 +20,7 @@
 package org.openpnp.machine.reference;
 
 import java.io.Closeable;
+import java.util.List;
 
 import org.openpnp.model.Location;
 import org.openpnp.spi.PropertySheetHolder;
@@ -60,6 +61,26 @@ public interface ReferenceDriver extends WizardConfigurable, PropertySheetHolder
      */
     public void moveTo(ReferenceHeadMountable hm, Location location, double speed) throws Exception;
 
+    /**
+     * Moves the specified HeadMountable through each of the given locations in order, as with
+     * moveTo(). The driver should send the moves so that the controller can blend them into one
+     * continuous motion rather than stopping at each location. The call blocks until the last
+     * move is complete.
+     * 
+     * The default implementation calls moveTo() for each location.
+     * 
+     * @param hm
+     * @param locations
+     * @param speed
+     * @throws Exception
+     */
+    public default void moveToSequence(ReferenceHeadMountable hm, List<Location> locations,
+            double speed) throws Exception {
+        for (Location location : locations) {
+            moveTo(hm, location, speed);
+        }
+    }
+
     /**
      * Returns a clone of the HeadMountable's current location. It's important that the returned
      * object is a clone, since the caller may modify the returned Location.
@@ -87,6 +108,32 @@ public interface ReferenceDriver extends WizardConfigurable, PropertySheetHolder
      */
     public void actuate(ReferenceActuator actuator, double value) throws Exception;
 
+    /**
+     * Actuates as with actuate(ReferenceActuator, boolean) but without first waiting for
+     * previously commanded motion to complete, so that the actuation can be sent while the head
+     * is still moving. This is only used for actuators that do not depend on the position of
+     * the head, such as feeder actuators. The default calls actuate().
+     * 
+     * @param actuator
+     * @param on
+     * @throws Exception
+     */
+    public default void actuateQueued(ReferenceActuator actuator, boolean on) throws Exception {
+        actuate(actuator, on);
+    }
+
+    /**
+     * Actuates as with actuate(ReferenceActuator, double) but without first waiting for
+     * previously commanded motion to complete. See actuateQueued(ReferenceActuator, boolean).
+     * 
+     * @param actuator
+     * @param value
+     * @throws Exception
+     */
+    public default void actuateQueued(ReferenceActuator actuator, double value) throws Exception {
+        actuate(actuator, value);
+    }
+
     /**
      * Read a String value from the given Actuator.
      * 
@@ -118,5 +165,15 @@ public interface ReferenceDriver extends WizardConfigurable, PropertySheetHolder
      */
     public void setEnabled(boolean enabled) throws Exception;
 
+    /**
+     * Blocks until all previously commanded motion has physically completed. Drivers that do not
+     * return from moveTo() before the move is complete do not need to implement this. It is called
+     * before operations that depend on the machine being at rest, such as capturing an image.
+     * 
+     * @throws Exception
+     */
+    public default void waitForCompletion() throws Exception {
+    }
+
     public default void createDefaults() {};
 }
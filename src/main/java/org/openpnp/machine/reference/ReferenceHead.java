@@ -20,6 +20,7 @@
 package org.openpnp.machine.reference;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.Action;
 
@@ -110,6 +111,17 @@ public class ReferenceHead extends AbstractHead {
         getMachine().fireMachineHeadActivity(this);
     }
 
+    public void moveToSequence(ReferenceHeadMountable hm, List<Location> locations, double speed) throws Exception {
+        for (Location location : locations) {
+            if (! isInsideSoftLimits(hm, location)) {
+                throw new Exception(String.format("Can't move %s to %s, outside of soft limits on head %s.",
+                        hm.getName(), location, getName()));
+            }
+        }
+        getDriver().moveToSequence(hm, locations, speed);
+        getMachine().fireMachineHeadActivity(this);
+    }
+
     @Override
     public String toString() {
         return getName();
@@ -1,7 +1,9 @@
 package org.openpnp.machine.reference;
 
 import java.awt.event.ActionEvent;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.AbstractAction;
@@ -30,8 +32,10 @@ import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.NozzleTip;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.base.AbstractNozzle;
+import org.openpnp.util.Metrics;
 import org.openpnp.util.MovableUtils;
 import org.openpnp.util.Utils2D;
+import org.openpnp.util.VirtualClock;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -47,6 +51,19 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
     @Attribute(required = false)
     private int placeDwellMilliseconds;
 
+    /**
+     * When enabled, the pick and place dwell times are used as timeouts only. The vacuum level is
+     * polled every adaptiveDwellPollMilliseconds and the dwell ends as soon as the level is in the
+     * nozzle tip's part-on window after a pick, or in its part-off window after a place. The
+     * part-off check always uses the full dwell, since the rising vacuum passes through the
+     * part-off window even when a part is still on the nozzle.
+     */
+    @Attribute(required = false)
+    private boolean adaptiveDwell = false;
+
+    @Attribute(required = false)
+    private int adaptiveDwellPollMilliseconds = 10;
+
     @Attribute(required = false)
     private String currentNozzleTipId;
 
@@ -127,6 +144,22 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
         this.placeDwellMilliseconds = placeDwellMilliseconds;
     }
 
+    public boolean isAdaptiveDwell() {
+        return adaptiveDwell;
+    }
+
+    public void setAdaptiveDwell(boolean adaptiveDwell) {
+        this.adaptiveDwell = adaptiveDwell;
+    }
+
+    public int getAdaptiveDwellPollMilliseconds() {
+        return adaptiveDwellPollMilliseconds;
+    }
+
+    public void setAdaptiveDwellPollMilliseconds(int adaptiveDwellPollMilliseconds) {
+        this.adaptiveDwellPollMilliseconds = adaptiveDwellPollMilliseconds;
+    }
+
     @Override
     public Location getHeadOffsets() {
         return headOffsets;
@@ -193,7 +226,16 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
         getMachine().fireMachineHeadActivity(head);
         
         // Dwell Time
-        Thread.sleep(this.getPickDwellMilliseconds() + nozzleTip.getPickDwellMilliseconds());
+        int pickDwellMilliseconds = this.getPickDwellMilliseconds() + nozzleTip.getPickDwellMilliseconds();
+        long t = VirtualClock.nanoTime();
+        if (adaptiveDwell && isPartOnEnabled()) {
+            dwellForVacuumLevel(pickDwellMilliseconds, nozzleTip.getVacuumLevelPartOnLow(),
+                    nozzleTip.getVacuumLevelPartOnHigh());
+        }
+        else {
+            VirtualClock.sleep(pickDwellMilliseconds);
+        }
+        Metrics.recordSince("nozzle.pickDwell", t);
         
         try {
             Map<String, Object> globals = new HashMap<>();
@@ -233,7 +275,17 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
         getMachine().fireMachineHeadActivity(head);
         
         // Dwell Time
-        Thread.sleep(this.getPlaceDwellMilliseconds() + nozzleTip.getPlaceDwellMilliseconds());
+        int placeDwellMilliseconds = this.getPlaceDwellMilliseconds() + nozzleTip.getPlaceDwellMilliseconds();
+        long t = VirtualClock.nanoTime();
+        if (adaptiveDwell && isPartOffEnabled()) {
+            // The part is released once the vacuum has reached the part-off window.
+            dwellForVacuumLevel(placeDwellMilliseconds, nozzleTip.getVacuumLevelPartOffLow(),
+                    nozzleTip.getVacuumLevelPartOffHigh());
+        }
+        else {
+            VirtualClock.sleep(placeDwellMilliseconds);
+        }
+        Metrics.recordSince("nozzle.placeDwell", t);
         
         try {
             Map<String, Object> globals = new HashMap<>();
@@ -303,12 +355,38 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
 
     @Override
     public void moveTo(Location location, double speed) throws Exception {
+        location = resolveLocation(location, getLocation());
+        location = compensateLocation(location, speed);
+        ((ReferenceHead) getHead()).moveTo(this, location, getHead().getMaxPartSpeed() * speed);
+        getMachine().fireMachineHeadActivity(head);
+    }
+
+    @Override
+    public void moveToSequence(List<Location> locations, double speed) throws Exception {
+        // Each location is resolved against the previous one, rather than the current location,
+        // since the driver may not have completed the previous move yet.
+        List<Location> headLocations = new ArrayList<>();
+        Location currentLocation = getLocation();
+        for (Location location : locations) {
+            location = resolveLocation(location, currentLocation);
+            currentLocation = location;
+            headLocations.add(compensateLocation(location, speed));
+        }
+        ((ReferenceHead) getHead()).moveToSequence(this, headLocations, getHead().getMaxPartSpeed() * speed);
+        getMachine().fireMachineHeadActivity(head);
+    }
+
+    /**
+     * Replaces any Double.NaN values in location with those of currentLocation and applies the
+     * rotation limits.
+     */
+    private Location resolveLocation(Location location, Location currentLocation) {
         // Shortcut Double.NaN. Sending Double.NaN in a Location is an old API that should no
         // longer be used. It will be removed eventually:
         // https://github.com/openpnp/openpnp/issues/255
         // In the mean time, since Double.NaN would cause a problem for calibration, we shortcut
         // it here by replacing any NaN values with the current value from the driver.
-        Location currentLocation = getLocation().convertToUnits(location.getUnits());
+        currentLocation = currentLocation.convertToUnits(location.getUnits());
         if (Double.isNaN(location.getX())) {
             location = location.derive(currentLocation.getX(), null, null, null);
         }
@@ -331,7 +409,13 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
             location = location.derive(null, null, null, currentLocation.getRotation() +
                     Utils2D.normalizeAngle180(location.getRotation() - currentLocation.getRotation()));
         }
+        return location;
+    }
 
+    /**
+     * Applies the nozzle tip runout compensation, if calibrated, to a resolved location.
+     */
+    private Location compensateLocation(Location location, double speed) {
         ReferenceNozzleTip calibrationNozzleTip = getCalibrationNozzleTip();
         if (calibrationNozzleTip != null && calibrationNozzleTip.getCalibration().isCalibrated(this)) {
             Location correctionOffset = calibrationNozzleTip.getCalibration().getCalibratedOffset(this, location.getRotation());
@@ -340,8 +424,7 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
         } else {
             Logger.debug("{}.moveTo({}, {})", getName(), location, speed);
         }
-        ((ReferenceHead) getHead()).moveTo(this, location, getHead().getMaxPartSpeed() * speed);
-        getMachine().fireMachineHeadActivity(head);
+        return location;
     }
 
     @Override
@@ -721,6 +804,30 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
         return Double.parseDouble(getVacuumActuator().read());
     }
 
+    /**
+     * Polls the vacuum level until it is inside the window from low to high, or until
+     * timeoutMilliseconds have passed. Returns true if the level reached the window before the
+     * timeout. With a zero timeout the level is read once and no time is spent waiting.
+     */
+    protected boolean dwellForVacuumLevel(int timeoutMilliseconds, double low, double high)
+            throws Exception {
+        long deadline = VirtualClock.currentTimeMillis() + timeoutMilliseconds;
+        int pollMilliseconds = Math.max(1, adaptiveDwellPollMilliseconds);
+        while (true) {
+            double vacuumLevel = readVacuumLevel();
+            if (vacuumLevel >= low && vacuumLevel <= high) {
+                return true;
+            }
+            long remaining = deadline - VirtualClock.currentTimeMillis();
+            if (remaining <= 0) {
+                Logger.debug("{} vacuum level {} not reached after {} ms", getName(), vacuumLevel,
+                        timeoutMilliseconds);
+                return false;
+            }
+            VirtualClock.sleep(Math.min(pollMilliseconds, remaining));
+        }
+    }
+
     @Override
     public boolean isPartOn() throws Exception {
         ReferenceNozzleTip nt = getNozzleTip();
@@ -733,11 +840,14 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
         try {
             // switch vacuum on for the test
             actuateVacuumValve(true);
+            ReferenceNozzleTip nt = getNozzleTip();
             // Dwell Time
-            Thread.sleep(this.getPickDwellMilliseconds() + nozzleTip.getPickDwellMilliseconds());
+            int dwellMilliseconds = this.getPickDwellMilliseconds() + nozzleTip.getPickDwellMilliseconds();
+            long t = VirtualClock.nanoTime();
+            VirtualClock.sleep(dwellMilliseconds);
+            Metrics.recordSince("nozzle.partOffDwell", t);
             // read the vacuum level. 
             double vacuumLevel = readVacuumLevel();
-            ReferenceNozzleTip nt = getNozzleTip();
             return vacuumLevel >= nt.getVacuumLevelPartOffLow() && vacuumLevel <= nt.getVacuumLevelPartOffHigh();
         }
         finally {
@@ -19,14 +19,26 @@
 
 package org.openpnp.machine.reference;
 
+import java.io.File;
 import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.openpnp.gui.support.Wizard;
@@ -39,6 +51,7 @@ import org.openpnp.model.Location;
 import org.openpnp.model.Panel;
 import org.openpnp.model.Part;
 import org.openpnp.model.Placement;
+import org.openpnp.spi.Camera;
 import org.openpnp.spi.Feeder;
 import org.openpnp.spi.FiducialLocator;
 import org.openpnp.spi.Head;
@@ -51,8 +64,11 @@ import org.openpnp.spi.PnpJobPlanner.PlannedPlacement;
 import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
 import org.openpnp.spi.base.AbstractJobProcessor;
 import org.openpnp.spi.base.AbstractPnpJobProcessor;
+import org.openpnp.util.Metrics;
 import org.openpnp.util.MovableUtils;
+import org.openpnp.util.TravellingSalesman;
 import org.openpnp.util.Utils2D;
+import org.openpnp.util.VirtualClock;
 import org.openpnp.util.VisionUtils;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
@@ -69,6 +85,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         PartHeight,
         Part
     }
+    
+    public enum PlannerType {
+        Simple,
+        CostModel
+    }
 
     @Attribute(required = false)
     protected JobOrderHint jobOrder = JobOrderHint.PartHeight;
@@ -76,6 +97,37 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     @Attribute(required = false)
     protected int maxVisionRetries = 3;
 
+    /**
+     * When enabled, work that does not move the machine is done on a background thread while
+     * the machine is busy. Currently the next cycle is planned while the current cycle is being
+     * placed.
+     */
+    @Attribute(required = false)
+    protected boolean overlappedExecution = false;
+
+    /**
+     * When enabled, feeders that are prefeed capable are fed for the next cycle while the
+     * current cycle is being placed, so that their parts are ready when the head gets there.
+     * The feed only overlaps the head's move if the driver streams moves, as GcodeDriver does
+     * with streaming enabled.
+     */
+    @Attribute(required = false)
+    protected boolean feedAhead = false;
+
+    /**
+     * When enabled, and more than one enabled feeder serves a part, picks of that part take
+     * turns between the feeders instead of always using the first one.
+     */
+    @Attribute(required = false)
+    protected boolean roundRobinFeeders = false;
+
+    /**
+     * When enabled, the metrics recorded during each job are written to a CSV file in the
+     * metrics directory of the configuration directory when the job finishes.
+     */
+    @Attribute(required = false)
+    protected boolean writeMetrics = false;
+
     @Element(required = false)
     public PnpJobPlanner planner = new SimplePnpJobPlanner();
 
@@ -85,13 +137,37 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
     protected Head head;
 
+    protected FeedersByPart feedersByPart;
+
     protected List<JobPlacement> jobPlacements = new ArrayList<>();
 
     private Step currentStep = null;
     
+    private ExecutorService overlapExecutor;
+    
+    private Future<List<PlannedPlacement>> nextCyclePlan;
+    
+    private Map<String, StepTiming> stepTimings = new LinkedHashMap<>();
+    
+    /**
+     * Feeders that have been fed ahead and are holding a part ready to be picked.
+     */
+    private Set<Feeder> prefedFeeders = new HashSet<>();
+    
     long startTime;
     int totalPartsPlaced;
     
+    /**
+     * VirtualClock.nanoTime() when the current cycle was planned.
+     */
+    long cycleStartNanos;
+    
+    /**
+     * VirtualClock.nanoTime() when each placement of the current cycle was first picked, so that
+     * the time from its pick to its place can be recorded.
+     */
+    private Map<PlannedPlacement, Long> pickStartNanos = new IdentityHashMap<>();
+    
     public ReferencePnpJobProcessor() {
     }
     
@@ -100,6 +176,10 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             throw new Exception("Can't initialize with a null Job.");
         }
         this.job = job;
+        cancelNextCyclePlan();
+        stepTimings.clear();
+        Metrics.reset();
+        prefedFeeders.clear();
         currentStep = new PreFlight();
         this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.STOPPED);
     }
@@ -107,6 +187,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     @Override
     public synchronized boolean next() throws JobProcessorException {
         this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.RUNNING);
+        Step step = currentStep;
+        long t = VirtualClock.nanoTime();
         try {
             currentStep = currentStep.step();
         }
@@ -114,6 +196,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.ERROR);
             throw e;
         }
+        finally {
+            recordStepTiming(step, VirtualClock.nanoTime() - t);
+        }
         if (currentStep == null) {
             this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.FINISHED);
         }
@@ -121,6 +206,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     }
 
     public synchronized void abort() throws JobProcessorException {
+        shutdownOverlapExecutor();
+        disposeFeedersByPart();
         try {
             new Cleanup().step();
         }
@@ -149,7 +236,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
      */
     protected class PreFlight implements Step {
         public Step step() throws JobProcessorException {
-            startTime = System.currentTimeMillis();
+            startTime = VirtualClock.currentTimeMillis();
             totalPartsPlaced = 0;
             
             jobPlacements.clear();
@@ -162,6 +249,13 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             catch (Exception e) {
                 throw new JobProcessorException(machine, e);
             }
+            disposeFeedersByPart();
+            feedersByPart = new FeedersByPart(machine);
+            
+            if (planner instanceof CostModelPnpJobPlanner) {
+                ((CostModelPnpJobPlanner) planner)
+                        .setRespectPartHeight(jobOrder == JobOrderHint.PartHeight);
+            }
             
             checkSetupErrors();
             
@@ -243,7 +337,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             validatePartNozzleTip(head, placement.getPart());
 
             // Make sure there is at least one compatible and enabled feeder available
-            findFeeder(machine, placement.getPart());
+            findFeeder(placement.getPart());
         }
         
         private void validatePartNozzleTip(Head head, Part part) throws JobProcessorException {
@@ -301,15 +395,16 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             // Everything still looks good, so prepare the feeders.
             fireTextStatus("Preparing feeders.");
             Machine machine = Configuration.get().getMachine();
+            Set<String> partIds = new HashSet<>();
+            for (JobPlacement placement : getPendingJobPlacements()) {
+                partIds.add(placement.getPartId());
+            }
             List<Feeder> feederList = new ArrayList<>();
             // Get all the feeders that are used in the pending placements.
             for (Feeder feeder : machine.getFeeders()) {
-                if (feeder.isEnabled() && feeder.getPart() != null) {
-                    for (JobPlacement placement : getPendingJobPlacements()) {
-                        if (placement.getPartId() == feeder.getPart().getId()) {
-                            feederList.add(feeder);
-                        }
-                    }
+                if (feeder.isEnabled() && feeder.getPart() != null
+                        && partIds.contains(feeder.getPart().getId())) {
+                    feederList.add(feeder);
                 }
             }
             for (Feeder feeder : feederList) {
@@ -397,36 +492,25 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     protected class Plan implements Step {
         public Step step() throws JobProcessorException {
             fireTextStatus("Planning placements.");
+            
+            cycleStartNanos = VirtualClock.nanoTime();
+            pickStartNanos.clear();
 
-            List<JobPlacement> jobPlacements;
-
-            if (jobOrder.equals(JobOrderHint.Part)) {
-                // Get the list of unfinished placements and sort them by part.
-                    jobPlacements = getPendingJobPlacements().stream()
-                            .sorted(Comparator.comparing(JobPlacement::getPartId))
-                            .collect(Collectors.toList());
-            } 
-            else {
-                // Get the list of unfinished placements and sort them by part height.
-                    jobPlacements = getPendingJobPlacements().stream()
-                            .sorted(Comparator
-                                .comparing(JobPlacement::getPartHeight)
-                                .thenComparing(JobPlacement::getPartId))
-                            .collect(Collectors.toList());
+            // Use the plan made in the background during the last cycle, if there is one.
+            List<PlannedPlacement> plannedPlacements = takeNextCyclePlan();
+            if (plannedPlacements == null) {
+                plannedPlacements = planCycle();
             }
 
-            if (jobPlacements.isEmpty()) {
+            if (plannedPlacements == null) {
                 return new Finish();
             }
 
-            long t = System.currentTimeMillis();
-            List<PlannedPlacement> plannedPlacements = planner.plan(head, jobPlacements);
-            Logger.debug("Planner complete in {}ms: {}", (System.currentTimeMillis() - t), plannedPlacements);
-
             if (plannedPlacements.isEmpty()) {
                 throw new JobProcessorException(planner, "Planner failed to plan any placements. Please contact support.");
             }
 
+            planner.planUsed(plannedPlacements);
             for (PlannedPlacement plannedPlacement : plannedPlacements) {
                 plannedPlacement.jobPlacement.setStatus(Status.Processing);
             }
@@ -437,6 +521,235 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
     }
     
+    /**
+     * Plan the next cycle from the pending placements. Returns null if there are no pending
+     * placements.
+     */
+    protected List<PlannedPlacement> planCycle() {
+        return planCycle(planner, getOrderedPendingJobPlacements());
+    }
+    
+    /**
+     * Plan a cycle from the given placements, which the planner may modify. Returns null if
+     * there are none. This does not read or change any job state, so it may be called from the
+     * background thread with placements and a planner taken on the job thread.
+     */
+    protected List<PlannedPlacement> planCycle(PnpJobPlanner planner, List<JobPlacement> jobPlacements) {
+        if (jobPlacements.isEmpty()) {
+            return null;
+        }
+
+        long t = System.currentTimeMillis();
+        List<PlannedPlacement> plannedPlacements = planner.plan(head, jobPlacements);
+        Logger.debug("Planner complete in {}ms: {}", (System.currentTimeMillis() - t), plannedPlacements);
+        return plannedPlacements;
+    }
+    
+    /**
+     * Returns the pending placements in the order of the job order setting.
+     */
+    protected List<JobPlacement> getOrderedPendingJobPlacements() {
+        List<JobPlacement> jobPlacements;
+
+        if (jobOrder.equals(JobOrderHint.Part)) {
+            // Get the list of unfinished placements and sort them by part.
+                jobPlacements = getPendingJobPlacements().stream()
+                        .sorted(Comparator.comparing(JobPlacement::getPartId))
+                        .collect(Collectors.toList());
+        } 
+        else {
+            // Get the list of unfinished placements and sort them by part height.
+                jobPlacements = getPendingJobPlacements().stream()
+                        .sorted(Comparator
+                            .comparing(JobPlacement::getPartHeight)
+                            .thenComparing(JobPlacement::getPartId))
+                        .collect(Collectors.toList());
+        }
+        return jobPlacements;
+    }
+    
+    /**
+     * If overlapped execution is enabled, start planning the next cycle in the background. This
+     * must only be called once the current cycle has been picked, so that the planned nozzles
+     * are not expected to be free before they are.
+     * 
+     * The pending placements are taken here on the job thread, since the job thread changes
+     * their status while the plan is made. The planner still reads the loaded nozzle tips, but
+     * those are only changed by ChangeNozzleTips, which runs after the plan has been taken.
+     */
+    protected void startPlanningNextCycle() {
+        if (!overlappedExecution) {
+            return;
+        }
+        cancelNextCyclePlan();
+        if (overlapExecutor == null) {
+            overlapExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, getClass().getSimpleName() + " Overlap");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        PnpJobPlanner planner = this.planner;
+        List<JobPlacement> jobPlacements = getOrderedPendingJobPlacements();
+        nextCyclePlan = overlapExecutor.submit(() -> planCycle(planner, jobPlacements));
+    }
+    
+    /**
+     * Returns the plan made ahead of time for the next cycle, waiting for it if it is still
+     * being made, or null if there is none or it is no longer valid because one of its
+     * placements has changed status since. The plan is kept for the Plan step.
+     */
+    protected List<PlannedPlacement> peekNextCyclePlan() {
+        if (nextCyclePlan == null) {
+            return null;
+        }
+        try {
+            List<PlannedPlacement> plannedPlacements = nextCyclePlan.get();
+            if (plannedPlacements == null) {
+                return null;
+            }
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                if (plannedPlacement.jobPlacement.getStatus() != Status.Pending) {
+                    Logger.debug("Discarding background plan, {} is no longer pending.", plannedPlacement);
+                    nextCyclePlan = null;
+                    discardFedAhead();
+                    return null;
+                }
+            }
+            return plannedPlacements;
+        }
+        catch (Exception e) {
+            Logger.warn("Background planning failed, planning again.", e);
+            cancelNextCyclePlan();
+            return null;
+        }
+    }
+    
+    /**
+     * Same as peekNextCyclePlan() but the plan is removed, so it is only used once.
+     */
+    protected List<PlannedPlacement> takeNextCyclePlan() {
+        List<PlannedPlacement> plannedPlacements = peekNextCyclePlan();
+        nextCyclePlan = null;
+        return plannedPlacements;
+    }
+    
+    /**
+     * If feed ahead is enabled, feed the prefeed capable feeders that the next cycle will pick
+     * from. The next cycle is planned now if that has not been started already. Each feeder is
+     * fed at most once, and a failed feed is only logged since the feeder will be fed again
+     * normally before it is picked.
+     * 
+     * This is called from Place once the first place move has been sent. The feeders are fed
+     * with Feeder.prefeed(), which does not wait for the move to complete, so with a driver that
+     * streams moves the feeds overlap the move.
+     */
+    protected void feedAhead() {
+        if (!feedAhead) {
+            return;
+        }
+        if (nextCyclePlan == null) {
+            nextCyclePlan = CompletableFuture.completedFuture(planCycle());
+        }
+        List<PlannedPlacement> plannedPlacements = peekNextCyclePlan();
+        if (plannedPlacements == null) {
+            return;
+        }
+        for (PlannedPlacement plannedPlacement : plannedPlacements) {
+            Feeder feeder;
+            try {
+                feeder = findFeeder(plannedPlacement.jobPlacement.getPlacement().getPart());
+            }
+            catch (JobProcessorException e) {
+                continue;
+            }
+            if (!feeder.isPrefeedCapable() || prefedFeeders.contains(feeder)) {
+                continue;
+            }
+            try {
+                fireTextStatus("Feed ahead %s on %s.", feeder.getName(), feeder.getPart().getId());
+                feeder.prefeed(plannedPlacement.nozzle);
+                prefedFeeders.add(feeder);
+            }
+            catch (Exception e) {
+                Logger.warn("Feed ahead of " + feeder.getName() + " failed.", e);
+            }
+        }
+    }
+    
+    /**
+     * Forgets the feeders that were fed ahead for a plan that is not going to be used, so that
+     * they are fed again normally before they are picked. The plan is discarded when the job
+     * has changed since it was made, so the fed parts can't be relied on any more. At worst
+     * this skips a part.
+     */
+    private void discardFedAhead() {
+        if (!prefedFeeders.isEmpty()) {
+            Logger.debug("Discarding feed ahead of {}.", prefedFeeders);
+            prefedFeeders.clear();
+        }
+    }
+    
+    /**
+     * Find the Feeder to use for the given Part, using the index built when the job started.
+     */
+    protected Feeder findFeeder(Part part) throws JobProcessorException {
+        if (feedersByPart == null) {
+            return findFeeder(machine, part);
+        }
+        return feedersByPart.find(part);
+    }
+    
+    /**
+     * Stops the feeder index listening to the machine once the job no longer needs it.
+     */
+    protected void disposeFeedersByPart() {
+        if (feedersByPart != null) {
+            feedersByPart.dispose();
+            feedersByPart = null;
+        }
+    }
+    
+    /**
+     * Cancels the plan being made in the background, if any, and waits for the background
+     * thread to be idle. A cancelled plan may still be running in the planner, which must not be
+     * used by the job thread at the same time.
+     */
+    protected void cancelNextCyclePlan() {
+        if (nextCyclePlan == null) {
+            return;
+        }
+        nextCyclePlan.cancel(true);
+        nextCyclePlan = null;
+        discardFedAhead();
+        if (overlapExecutor == null) {
+            return;
+        }
+        try {
+            // The executor has a single thread, so this runs once the cancelled plan has ended.
+            overlapExecutor.submit(() -> {
+            }).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            Logger.warn(e);
+        }
+    }
+    
+    /**
+     * Cancels any background planning and stops the background thread. It is started again
+     * when the next job needs it.
+     */
+    protected void shutdownOverlapExecutor() {
+        cancelNextCyclePlan();
+        if (overlapExecutor != null) {
+            overlapExecutor.shutdown();
+            overlapExecutor = null;
+        }
+    }
+    
     protected class ChangeNozzleTips extends PlannedPlacementStep {
         public ChangeNozzleTips(List<PlannedPlacement> plannedPlacements) {
             super(plannedPlacements);
@@ -461,8 +774,10 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                     nozzle.getName(), 
                     nozzleTip.getName());
             try {
+                long t = VirtualClock.nanoTime();
                 nozzle.unloadNozzleTip();
                 nozzle.loadNozzleTip(nozzleTip);
+                Metrics.recordSince("job.nozzleTipChange", t);
             }
             catch (Exception e) {
                 throw new JobProcessorException(nozzleTip,  e);
@@ -523,7 +838,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             final Placement placement = jobPlacement.getPlacement();
             final Part part = placement.getPart();
             final BoardLocation boardLocation = plannedPlacement.jobPlacement.getBoardLocation();
-            final Feeder feeder = findFeeder(machine, part);
+            final Feeder feeder = findFeeder(part);
+            
+            pickStartNanos.putIfAbsent(plannedPlacement, VirtualClock.nanoTime());
             
             try {
                 HashMap<String, Object> params = new HashMap<>();
@@ -542,7 +859,12 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 throw new JobProcessorException(null, e);
             }
 
-            feed(feeder, nozzle);
+            if (prefedFeeders.remove(feeder)) {
+                Logger.debug("{} was fed ahead.", feeder.getName());
+            }
+            else {
+                feed(feeder, nozzle);
+            }
             
             pick(nozzle, feeder, placement, part);
 
@@ -570,6 +892,10 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 }
             }
             
+            if (roundRobinFeeders) {
+                feedersByPart.advance(part);
+            }
+            
             return this;
         }
         
@@ -589,7 +915,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 try {
                     fireTextStatus("Feed %s on %s.", feeder.getName(), feeder.getPart().getId());
                     
+                    long t = VirtualClock.nanoTime();
                     feeder.feed(nozzle);
+                    Metrics.recordSince("job.feed", t);
                     return;
                 }
                 catch (Exception e) {
@@ -604,6 +932,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 fireTextStatus("Pick %s from %s for %s.", part.getId(), feeder.getName(),
                         placement.getId());
                 
+                long t = VirtualClock.nanoTime();
+                
                 // Move to pick location.
                 MovableUtils.moveToLocationAtSafeZ(nozzle, feeder.getPickLocation());
 
@@ -613,6 +943,8 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
                 // Retract
                 nozzle.moveToSafeZ();
+                
+                Metrics.recordSince("job.pick", t);
             }
             catch (Exception e) {
                 throw new JobProcessorException(nozzle, e);
@@ -649,6 +981,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     protected class Align extends PlannedPlacementStep {
         public Align(List<PlannedPlacement> plannedPlacements) {
             super(plannedPlacements);
+            // This cycle has been picked, so the next one can be planned while it is aligned
+            // and placed.
+            startPlanningNextCycle();
         }
 
         @Override
@@ -688,11 +1023,13 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             for (int i = 0; i < ReferencePnpJobProcessor.this.getMaxVisionRetries(); i++) {
                 fireTextStatus("Aligning %s for %s.", part.getId(), placement.getId());
                 try {
+                    long t = VirtualClock.nanoTime();
                     plannedPlacement.alignmentOffsets = VisionUtils.findPartAlignmentOffsets(
                             partAlignment,
                             part,
                             boardLocation,
                             placement.getLocation(), nozzle);
+                    Metrics.recordSince("job.align", t);
                     Logger.debug("Align {} with {}, offsets {}", part, nozzle, plannedPlacement.alignmentOffsets);
                     return;
                 }
@@ -722,6 +1059,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     }
 
     protected class Place extends PlannedPlacementStep {
+        /**
+         * Feed ahead is started once per cycle, after the first place move has been sent.
+         */
+        private boolean fedAhead;
+
         public Place(List<PlannedPlacement> plannedPlacements) {
             super(plannedPlacements);
         }
@@ -756,6 +1098,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             
             totalPartsPlaced++;
             
+            Long pickStart = pickStartNanos.remove(plannedPlacement);
+            if (pickStart != null) {
+                Metrics.recordSince("job.placement", pickStart);
+            }
+            
             scriptComplete(plannedPlacement, placementLocation);
             
             return this;
@@ -765,14 +1112,24 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             fireTextStatus("Placing %s for %s.", part.getId(), placement.getId());
             
             try {
+                long t = VirtualClock.nanoTime();
+                
                 // Move to the placement location
                 MovableUtils.moveToLocationAtSafeZ(nozzle, placementLocation);
 
+                // Feed for the next cycle while the head is on its way.
+                if (!fedAhead) {
+                    fedAhead = true;
+                    feedAhead();
+                }
+
                 // Place the part
                 nozzle.place();
 
                 // Retract
                 nozzle.moveToSafeZ();
+                
+                Metrics.recordSince("job.place", t);
             }
             catch (Exception e) {
                 throw new JobProcessorException(nozzle, e);
@@ -918,6 +1275,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     protected class FinishCycle implements Step {
         public Step step() throws JobProcessorException {
             discardAll(head);
+            
+            Metrics.recordSince("job.cycle", cycleStartNanos);
+            
             return new Plan();
         }
     }
@@ -954,9 +1314,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     
     protected class Finish implements Step {
         public Step step() throws JobProcessorException {
+            shutdownOverlapExecutor();
+            disposeFeedersByPart();
             new Cleanup().step();
           
-            double dtSec = (System.currentTimeMillis() - startTime) / 1000.0;
+            double dtSec = (VirtualClock.currentTimeMillis() - startTime) / 1000.0;
             DecimalFormat df = new DecimalFormat("###,###.0");
             
             // Collect the errored placements
@@ -969,6 +1331,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
             Logger.info("Job finished {} parts in {} sec. This is {} CPH", totalPartsPlaced,
                     df.format(dtSec), df.format(totalPartsPlaced / (dtSec / 3600.0)));
+            if (VirtualClock.isEnabled()) {
+                Logger.info("Job time is simulated machine time.");
+            }
 
             try {
                 HashMap<String, Object> params = new HashMap<>();
@@ -1001,6 +1366,15 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 Logger.info("{}: {}", jobPlacement, jobPlacement.getError().getMessage());
             }
 
+            Logger.info("Step timings:");
+            for (Map.Entry<String, StepTiming> entry : stepTimings.entrySet()) {
+                Logger.info("{}: {}", entry.getKey(), entry.getValue());
+            }
+            
+            if (writeMetrics) {
+                writeMetrics();
+            }
+
             return null;
         }
     }
@@ -1015,6 +1389,77 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
     }
     
+    /**
+     * Writes the metrics recorded during the job to a CSV file in the metrics directory of the
+     * configuration directory.
+     */
+    private void writeMetrics() {
+        try {
+            File dir = new File(Configuration.get().getConfigurationDirectory(), "metrics");
+            dir.mkdirs();
+            File file = new File(dir, "job-"
+                    + new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date()) + ".csv");
+            Metrics.writeCsv(file);
+            Logger.info("Job metrics written to {}", file);
+        }
+        catch (Exception e) {
+            Logger.warn("Failed to write job metrics: {}", e);
+        }
+    }
+    
+    private void recordStepTiming(Step step, long nanos) {
+        String name = step.getClass().getSimpleName();
+        Metrics.record("job.step." + name, nanos);
+        StepTiming timing = stepTimings.get(name);
+        if (timing == null) {
+            timing = new StepTiming();
+            stepTimings.put(name, timing);
+        }
+        timing.add(nanos);
+    }
+    
+    /**
+     * Returns the time spent in each type of Step since the job was initialized, keyed by the
+     * Step's class name.
+     */
+    public synchronized Map<String, StepTiming> getStepTimings() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(stepTimings));
+    }
+    
+    public static class StepTiming {
+        private int count;
+        private long totalNanos;
+        private long maxNanos;
+        
+        void add(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getTotalMilliseconds() {
+            return totalNanos / 1e6;
+        }
+
+        public double getMeanMilliseconds() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        public double getMaxMilliseconds() {
+            return maxNanos / 1e6;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d steps, total %.1f ms, mean %.1f ms, max %.1f ms", count,
+                    getTotalMilliseconds(), getMeanMilliseconds(), getMaxMilliseconds());
+        }
+    }
+    
     protected List<JobPlacement> getPendingJobPlacements() {
         return this.jobPlacements.stream().filter((jobPlacement) -> {
             return jobPlacement.getStatus() == Status.Pending;
@@ -1038,6 +1483,56 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         this.jobOrder = newJobOrder;
     }    
 
+    /**
+     * Returns which of the built in planners is used. Any other planner is reported as Simple.
+     */
+    public PlannerType getPlannerType() {
+        return planner instanceof CostModelPnpJobPlanner ? PlannerType.CostModel : PlannerType.Simple;
+    }
+
+    /**
+     * Replaces the planner with a new one of the given type, unless it is already of that type.
+     */
+    public void setPlannerType(PlannerType plannerType) {
+        if (plannerType == getPlannerType()) {
+            return;
+        }
+        planner = plannerType == PlannerType.CostModel ? new CostModelPnpJobPlanner()
+                : new SimplePnpJobPlanner();
+    }
+
+    public boolean isOverlappedExecution() {
+        return overlappedExecution;
+    }
+
+    public void setOverlappedExecution(boolean overlappedExecution) {
+        this.overlappedExecution = overlappedExecution;
+    }
+
+    public boolean isFeedAhead() {
+        return feedAhead;
+    }
+
+    public void setFeedAhead(boolean feedAhead) {
+        this.feedAhead = feedAhead;
+    }
+
+    public boolean isRoundRobinFeeders() {
+        return roundRobinFeeders;
+    }
+
+    public void setRoundRobinFeeders(boolean roundRobinFeeders) {
+        this.roundRobinFeeders = roundRobinFeeders;
+    }
+
+    public boolean isWriteMetrics() {
+        return writeMetrics;
+    }
+
+    public void setWriteMetrics(boolean writeMetrics) {
+        this.writeMetrics = writeMetrics;
+    }
+
     public int getMaxVisionRetries() {
         return maxVisionRetries;
     }
@@ -1335,4 +1830,383 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             return null;
         }
     }
+    
+    /**
+     * A planner that plans each cycle to minimize the cost of a simple model of the machine.
+     * Costs are in millimeters of head travel, so the nozzle tip change and calibration costs
+     * are the distance the head could have travelled in the time they take.
+     * 
+     * Placements are visited in the order of a travelling salesman tour of the board, which is
+     * solved once per job. For each nozzle, the planner looks at the next lookahead compatible
+     * placements on the tour and chooses the one that adds the least cost to the cycle. The
+     * cost includes travel from the previous feeder and the previous placement, a detour to the
+     * bottom camera for the first placement in the cycle that needs alignment, and a nozzle
+     * tip change and calibration if the loaded nozzle tip can't be used. The planned
+     * placements are then put in the order with the least travel.
+     */
+    @Root
+    public static class CostModelPnpJobPlanner implements PnpJobPlanner {
+        /**
+         * Cost of a nozzle tip change.
+         */
+        @Attribute(required = false)
+        protected double nozzleTipChangeCost = 500;
+
+        /**
+         * Additional cost of a nozzle tip change if the nozzle tip has calibration enabled.
+         */
+        @Attribute(required = false)
+        protected double calibrationCost = 300;
+
+        /**
+         * Number of compatible placements on the tour considered for each nozzle.
+         */
+        @Attribute(required = false)
+        protected int lookahead = 20;
+
+        /**
+         * If true, only placements of the lowest remaining part height are planned, so that
+         * taller parts are placed after the shorter ones. This is not saved, it is set from the
+         * job processor's Job Order when each job starts, and is true for the Part Height order.
+         */
+        protected boolean respectPartHeight = false;
+
+        /**
+         * The largest cycle that is ordered by trying every order.
+         */
+        private static final int maxExhaustiveOrderSize = 7;
+
+        private List<JobPlacement> tour = new ArrayList<>();
+
+        private Map<JobPlacement, Integer> tourIndex = new IdentityHashMap<>();
+
+        /**
+         * Costings of the placements on the tour. They are looked up when the tour is solved
+         * and kept for the job, so the pick locations are those of the feeders at that time.
+         */
+        private Map<JobPlacement, Costing> costings = new IdentityHashMap<>();
+
+        /**
+         * Where the last cycle that was used ended. This is only updated in planUsed(), since a
+         * plan made ahead of time may be discarded.
+         */
+        private Location lastPlacementLocation;
+
+        @Override
+        public List<PlannedPlacement> plan(Head head, List<JobPlacement> jobPlacements) {
+            Machine machine = head.getMachine();
+            
+            updateTour(machine, jobPlacements);
+
+            double minPartHeight = Double.POSITIVE_INFINITY;
+            if (respectPartHeight) {
+                for (JobPlacement jobPlacement : jobPlacements) {
+                    minPartHeight = Math.min(minPartHeight, jobPlacement.getPartHeight());
+                }
+            }
+            Set<JobPlacement> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+            pending.addAll(jobPlacements);
+            List<JobPlacement> candidates = new ArrayList<>();
+            for (JobPlacement jobPlacement : tour) {
+                if (pending.contains(jobPlacement) 
+                        && (!respectPartHeight || jobPlacement.getPartHeight() <= minPartHeight)) {
+                    candidates.add(jobPlacement);
+                }
+            }
+
+            Location cameraLocation = null;
+            try {
+                Camera camera = VisionUtils.getBottomVisionCamera();
+                cameraLocation = camera.getLocation();
+            }
+            catch (Exception e) {
+                // No bottom camera, so there is no detour.
+            }
+
+            List<PlannedPlacement> plannedPlacements = new ArrayList<>();
+            List<NozzleTip> nozzleTips = new ArrayList<>(machine.getNozzleTips());
+            Location pickLocation = null;
+            Location placementLocation = lastPlacementLocation;
+            boolean aligning = false;
+            for (Nozzle nozzle : head.getNozzles()) {
+                Choice best = null;
+                int considered = 0;
+                for (JobPlacement jobPlacement : candidates) {
+                    if (considered >= lookahead) {
+                        break;
+                    }
+                    Choice choice = choose(head, nozzle, costings.get(jobPlacement), nozzleTips,
+                            pickLocation, placementLocation, aligning ? null : cameraLocation);
+                    if (choice == null) {
+                        continue;
+                    }
+                    considered++;
+                    if (best == null || choice.cost < best.cost) {
+                        best = choice;
+                    }
+                }
+                if (best == null) {
+                    continue;
+                }
+                plannedPlacements.add(new PlannedPlacement(nozzle, best.nozzleTip, best.costing.jobPlacement));
+                candidates.remove(best.costing.jobPlacement);
+                nozzleTips.remove(best.nozzleTip);
+                if (best.costing.pickLocation != null) {
+                    pickLocation = best.costing.pickLocation;
+                }
+                placementLocation = best.costing.placementLocation;
+                aligning |= best.costing.aligned;
+            }
+            
+            return order(plannedPlacements, costings, aligning ? cameraLocation : null);
+        }
+
+        @Override
+        public void planUsed(List<PlannedPlacement> plannedPlacements) {
+            if (plannedPlacements.isEmpty()) {
+                return;
+            }
+            Costing costing = costings.get(plannedPlacements.get(plannedPlacements.size() - 1).jobPlacement);
+            if (costing != null) {
+                lastPlacementLocation = costing.placementLocation;
+            }
+        }
+
+        /**
+         * Cost the placements and solve the tour of the board placements if any of them are not
+         * on the current tour, which happens when a new job is started.
+         */
+        protected void updateTour(Machine machine, List<JobPlacement> jobPlacements) {
+            if (tourIndex.keySet().containsAll(jobPlacements)) {
+                return;
+            }
+            costings.clear();
+            for (JobPlacement jobPlacement : jobPlacements) {
+                costings.put(jobPlacement, new Costing(machine, jobPlacement));
+            }
+            TravellingSalesman<JobPlacement> tsm = new TravellingSalesman<>(
+                    jobPlacements, 
+                    new TravellingSalesman.Locator<JobPlacement>() { 
+                        @Override
+                        public Location getLocation(JobPlacement locatable) {
+                            return costings.get(locatable).placementLocation;
+                        }
+                    }, 
+                    lastPlacementLocation,
+                    null);
+            tsm.solve();
+            Logger.debug("Solved tour of {} placements in {}ms.", jobPlacements.size(), tsm.getSolverDuration());
+            tourIndex.clear();
+            tour = new ArrayList<>(tsm.getTravel());
+            for (int i = 0; i < tour.size(); i++) {
+                tourIndex.put(tour.get(i), i);
+            }
+        }
+
+        /**
+         * Returns the cost of planning the placement on the nozzle, or null if the nozzle can't
+         * handle the placement with the remaining nozzle tips. Nozzle tips that are loaded on
+         * another nozzle of the head are not changed to.
+         */
+        protected Choice choose(Head head, Nozzle nozzle, Costing costing, List<NozzleTip> nozzleTips,
+                Location pickLocation, Location placementLocation, Location cameraLocation) {
+            org.openpnp.model.Package pkg = costing.jobPlacement.getPlacement().getPart().getPackage();
+            NozzleTip nozzleTip = nozzle.getNozzleTip();
+            double cost = 0;
+            if (nozzleTip == null || !nozzleTips.contains(nozzleTip)
+                    || !pkg.getCompatibleNozzleTips().contains(nozzleTip)) {
+                nozzleTip = null;
+                for (NozzleTip tip : nozzleTips) {
+                    if (pkg.getCompatibleNozzleTips().contains(tip) 
+                            && nozzle.getCompatibleNozzleTips().contains(tip)
+                            && !isLoadedOnOtherNozzle(head, nozzle, tip)) {
+                        nozzleTip = tip;
+                        break;
+                    }
+                }
+                if (nozzleTip == null) {
+                    return null;
+                }
+                cost += nozzleTipChangeCost;
+                if (nozzleTip instanceof ReferenceNozzleTip 
+                        && ((ReferenceNozzleTip) nozzleTip).getCalibration().isEnabled()) {
+                    cost += calibrationCost;
+                }
+            }
+            cost += distance(pickLocation, costing.pickLocation);
+            cost += distance(placementLocation, costing.placementLocation);
+            if (costing.aligned && cameraLocation != null && costing.pickLocation != null) {
+                cost += distance(costing.pickLocation, cameraLocation) 
+                        + distance(cameraLocation, costing.placementLocation)
+                        - distance(costing.pickLocation, costing.placementLocation);
+            }
+            return new Choice(costing, nozzleTip, cost);
+        }
+
+        private static boolean isLoadedOnOtherNozzle(Head head, Nozzle nozzle, NozzleTip nozzleTip) {
+            for (Nozzle other : head.getNozzles()) {
+                if (other != nozzle && other.getNozzleTip() == nozzleTip) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the planned placements in the order that needs the least travel to pick them
+         * all, visit the camera and place them all. Large cycles are left in the order they
+         * were planned.
+         */
+        protected List<PlannedPlacement> order(List<PlannedPlacement> plannedPlacements,
+                Map<JobPlacement, Costing> costings, Location cameraLocation) {
+            if (plannedPlacements.size() < 2 || plannedPlacements.size() > maxExhaustiveOrderSize) {
+                return plannedPlacements;
+            }
+            List<PlannedPlacement> best = new ArrayList<>(plannedPlacements);
+            double bestCost = travel(best, costings, cameraLocation);
+            int[] indexes = new int[plannedPlacements.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = i;
+            }
+            while (nextPermutation(indexes)) {
+                List<PlannedPlacement> ordered = new ArrayList<>();
+                for (int i : indexes) {
+                    ordered.add(plannedPlacements.get(i));
+                }
+                double cost = travel(ordered, costings, cameraLocation);
+                if (cost < bestCost) {
+                    best = ordered;
+                    bestCost = cost;
+                }
+            }
+            return best;
+        }
+
+        private double travel(List<PlannedPlacement> plannedPlacements,
+                Map<JobPlacement, Costing> costings, Location cameraLocation) {
+            double cost = 0;
+            Location location = lastPlacementLocation;
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                Location pickLocation = costings.get(plannedPlacement.jobPlacement).pickLocation;
+                if (pickLocation != null) {
+                    cost += distance(location, pickLocation);
+                    location = pickLocation;
+                }
+            }
+            if (cameraLocation != null) {
+                cost += distance(location, cameraLocation);
+                location = cameraLocation;
+            }
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                Location placementLocation = costings.get(plannedPlacement.jobPlacement).placementLocation;
+                cost += distance(location, placementLocation);
+                location = placementLocation;
+            }
+            return cost;
+        }
+
+        /**
+         * Rearrange the indexes into the next permutation in lexicographic order. Returns false
+         * if they were already in the last one.
+         */
+        private static boolean nextPermutation(int[] indexes) {
+            int i = indexes.length - 2;
+            while (i >= 0 && indexes[i] >= indexes[i + 1]) {
+                i--;
+            }
+            if (i < 0) {
+                return false;
+            }
+            int j = indexes.length - 1;
+            while (indexes[j] <= indexes[i]) {
+                j--;
+            }
+            int t = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = t;
+            for (int a = i + 1, b = indexes.length - 1; a < b; a++, b--) {
+                t = indexes[a];
+                indexes[a] = indexes[b];
+                indexes[b] = t;
+            }
+            return true;
+        }
+
+        private static double distance(Location a, Location b) {
+            if (a == null || b == null) {
+                return 0;
+            }
+            return a.convertToUnits(LengthUnit.Millimeters).getLinearDistanceTo(b);
+        }
+
+        /**
+         * The locations and alignment needs of a placement, looked up once per job.
+         */
+        protected static class Costing {
+            final JobPlacement jobPlacement;
+            final Location pickLocation;
+            final Location placementLocation;
+            final boolean aligned;
+
+            Costing(Machine machine, JobPlacement jobPlacement) {
+                this.jobPlacement = jobPlacement;
+                Part part = jobPlacement.getPlacement().getPart();
+                Location pickLocation = null;
+                try {
+                    pickLocation = findFeeder(machine, part).getPickLocation();
+                }
+                catch (Exception e) {
+                    // The pick location is not known yet, so feeder travel is not counted.
+                }
+                this.pickLocation = pickLocation;
+                this.placementLocation = Utils2D.calculateBoardPlacementLocation(
+                        jobPlacement.getBoardLocation(), jobPlacement.getPlacement().getLocation());
+                this.aligned = findPartAligner(machine, part) != null;
+            }
+        }
+
+        protected static class Choice {
+            final Costing costing;
+            final NozzleTip nozzleTip;
+            final double cost;
+
+            Choice(Costing costing, NozzleTip nozzleTip, double cost) {
+                this.costing = costing;
+                this.nozzleTip = nozzleTip;
+                this.cost = cost;
+            }
+        }
+
+        public double getNozzleTipChangeCost() {
+            return nozzleTipChangeCost;
+        }
+
+        public void setNozzleTipChangeCost(double nozzleTipChangeCost) {
+            this.nozzleTipChangeCost = nozzleTipChangeCost;
+        }
+
+        public double getCalibrationCost() {
+            return calibrationCost;
+        }
+
+        public void setCalibrationCost(double calibrationCost) {
+            this.calibrationCost = calibrationCost;
+        }
+
+        public int getLookahead() {
+            return lookahead;
+        }
+
+        public void setLookahead(int lookahead) {
+            this.lookahead = lookahead;
+        }
+
+        public boolean isRespectPartHeight() {
+            return respectPartHeight;
+        }
+
+        public void setRespectPartHeight(boolean respectPartHeight) {
+            this.respectPartHeight = respectPartHeight;
+        }
+    }
 }
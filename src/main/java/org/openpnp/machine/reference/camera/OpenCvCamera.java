@@ -85,6 +85,27 @@ public class OpenCvCamera extends ReferenceCamera implements Runnable {
         }
     }
 
+    /**
+     * Reads the frame grabber's Mat directly instead of converting it to a BufferedImage and
+     * back. Falls back to captureRaw() if the read fails, which retries.
+     */
+    @Override
+    protected synchronized Mat captureRawMat() {
+        if (thread == null) {
+            initCamera();
+        }
+        Mat mat = new Mat();
+        try {
+            if (fg.read(mat)) {
+                return mat;
+            }
+        }
+        catch (Exception e) {
+        }
+        mat.release();
+        return super.captureRawMat();
+    }
+
     @Override
     public synchronized void startContinuousCapture(CameraListener listener) {
         if (thread == null) {
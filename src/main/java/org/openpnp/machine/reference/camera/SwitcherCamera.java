@@ -23,6 +23,7 @@ import java.awt.image.BufferedImage;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.opencv.core.Mat;
 import org.openpnp.CameraListener;
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.machine.reference.ReferenceCamera;
@@ -69,6 +70,20 @@ public class SwitcherCamera extends ReferenceCamera implements Runnable {
         if (!ensureOpen()) {
             return null;
         }
+        switchTo();
+        return super.capture();
+    }
+    
+    @Override
+    public Mat captureMat() {
+        if (!ensureOpen()) {
+            return null;
+        }
+        switchTo();
+        return super.captureMat();
+    }
+    
+    private void switchTo() {
         synchronized (switchers) {
             if (switchers.get(switcher) != this) {
                 try {
@@ -86,7 +101,6 @@ public class SwitcherCamera extends ReferenceCamera implements Runnable {
                 }                
             }
         }
-        return super.capture();
     }
 
     private synchronized boolean ensureOpen() {
@@ -0,0 +1,102 @@
+package org.openpnp.machine.reference.driver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A command text that has been split into literal segments and variable slots so that variables
+ * can be substituted in a single pass, without scanning the text with a regular expression each
+ * time. Variables are written in the format {Name:Format} where Format is used with
+ * String.format() and is optional, defaulting to %s.
+ */
+public class CommandTemplate {
+    public static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{(\\w+)(?::(.+?))?\\}");
+
+    private final String text;
+
+    /**
+     * literals[i] is the text preceding slots[i]. The last literal is the text following the last
+     * slot, so there is always one more literal than there are slots.
+     */
+    private final String[] literals;
+
+    private final Slot[] slots;
+
+    public CommandTemplate(String text) {
+        this.text = text;
+        List<String> literals = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+        Matcher matcher = VARIABLE_PATTERN.matcher(text);
+        int start = 0;
+        while (matcher.find()) {
+            literals.add(text.substring(start, matcher.start()));
+            String format = matcher.group(2);
+            slots.add(new Slot(matcher.group(1), format == null ? "%s" : format,
+                    matcher.group()));
+            start = matcher.end();
+        }
+        literals.add(text.substring(start));
+        this.literals = literals.toArray(new String[] {});
+        this.slots = slots.toArray(new Slot[] {});
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns true if the template contains at least one variable with the given name.
+     */
+    public boolean hasVariable(String name) {
+        for (Slot slot : slots) {
+            if (slot.name.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the text with each variable that has an entry in variables replaced by its value,
+     * formatted with the variable's format. A null value replaces the variable with "". Variables
+     * that have no entry are left in the text unchanged.
+     */
+    public String substitute(Map<String, Object> variables) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < slots.length; i++) {
+            sb.append(literals[i]);
+            Slot slot = slots[i];
+            if (!variables.containsKey(slot.name)) {
+                sb.append(slot.text);
+                continue;
+            }
+            Object value = variables.get(slot.name);
+            if (value != null) {
+                sb.append(String.format((Locale) null, slot.format, value));
+            }
+        }
+        sb.append(literals[slots.length]);
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static class Slot {
+        final String name;
+        final String format;
+        final String text;
+
+        Slot(String name, String format, String text) {
+            this.name = name;
+            this.format = format;
+            this.text = text;
+        }
+    }
+}
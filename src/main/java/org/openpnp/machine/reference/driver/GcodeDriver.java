@@ -2,12 +2,14 @@ package org.openpnp.machine.reference.driver;
 
 import java.awt.event.ActionEvent;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -40,6 +42,7 @@ import org.openpnp.spi.HeadMountable;
 import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.base.SimplePropertySheetHolder;
+import org.openpnp.util.Metrics;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -114,6 +117,13 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
         @ElementList(required = false, inline = true, entry = "text", data = true)
         public ArrayList<String> commands = new ArrayList<>();
 
+        /**
+         * The compiled forms of the command text, created on first use and discarded whenever the
+         * text is changed with setCommand().
+         */
+        private CommandTemplate template;
+        private Pattern pattern;
+
         public Command(String headMountableId, CommandType type, String text) {
             this.headMountableId = headMountableId;
             this.type = type;
@@ -121,6 +131,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
         }
 
         public void setCommand(String text) {
+            this.template = null;
+            this.pattern = null;
             this.commands.clear();
             if (text != null) {
                 text = text.trim();
@@ -134,6 +146,26 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
             return Joiner.on('\n').join(commands);
         }
 
+        /**
+         * Returns the command text compiled for variable substitution.
+         */
+        public CommandTemplate getTemplate() {
+            if (template == null) {
+                template = new CommandTemplate(getCommand());
+            }
+            return template;
+        }
+
+        /**
+         * Returns the command text compiled as a regular expression, for the regex command types.
+         */
+        public Pattern getPattern() {
+            if (pattern == null) {
+                pattern = Pattern.compile(getCommand());
+            }
+            return pattern;
+        }
+
         private Command() {
 
         }
@@ -175,6 +207,22 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
     @Attribute(required = false)
     protected boolean backslashEscapedCharactersEnabled = false;
 
+    /**
+     * When enabled, move commands are streamed to the controller without waiting for each one to
+     * be confirmed. Up to maxCommandsInFlight commands may be unconfirmed at any time, which keeps
+     * the controller's motion planner fed. The driver only blocks at sync points such as
+     * actuator commands, actuator reads, homing and camera captures.
+     */
+    @Attribute(required = false)
+    protected boolean streamingEnabled = false;
+
+    /**
+     * The number of commands that may be sent without having been confirmed when streaming is
+     * enabled. This should not exceed the number of commands the controller can buffer.
+     */
+    @Attribute(required = false)
+    protected int maxCommandsInFlight = 4;
+
     @Element(required = false)
     protected Location homingFiducialLocation = new Location(LengthUnit.Millimeters);
 
@@ -196,6 +244,33 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
     private LinkedBlockingQueue<String> responseQueue = new LinkedBlockingQueue<>();
     private GcodeDriver parent = null;
     
+    /**
+     * Commands that have been streamed to the controller but not yet confirmed, oldest first.
+     * Confirmations arrive in the order the commands were sent, so the head of the queue is
+     * always the command the next confirmation belongs to. Guarded by commandLock.
+     */
+    private ArrayDeque<String> commandsInFlight = new ArrayDeque<>();
+
+    /**
+     * Held while a command is sent and its confirmation collected, so that commands from
+     * different threads don't interleave and commandsInFlight is only used by one thread at a
+     * time.
+     */
+    private final Object commandLock = new Object();
+    
+    /**
+     * When streaming, the MOVE_TO_COMPLETE_COMMAND of the last move is held back until the next
+     * sync point rather than being sent after every move. Guarded by commandLock, as it is part
+     * of the state of the commands in flight.
+     */
+    private String pendingMoveToCompleteCommand;
+    
+    /**
+     * Set while moveToSequence() is running, so moves are streamed even if streaming is not
+     * enabled.
+     */
+    private boolean sequenceInProgress;
+    
     @Commit
     public void commit() {
         super.commit();
@@ -289,6 +364,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
 
     @Override
     public void home(ReferenceHead head) throws Exception {
+        waitForCompletion();
+        
         // Home is sent with an infinite timeout since it's tough to tell how long it will
         // take.
         String command = getCommand(null, CommandType.HOME_COMMAND);
@@ -298,7 +375,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
         List<String> responses = sendGcode(command, timeout);
 
         // Check home complete response against user's regex
-        String homeCompleteRegex = getCommand(null, CommandType.HOME_COMPLETE_REGEX);
+        Pattern homeCompleteRegex = getCommandPattern(null, CommandType.HOME_COMPLETE_REGEX);
         if (homeCompleteRegex != null) {
             if (timeout == -1) {
                 timeout = Long.MAX_VALUE;
@@ -434,6 +511,22 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
         return c.getCommand();
     }
 
+    public CommandTemplate getCommandTemplate(HeadMountable hm, CommandType type) {
+        Command c = getCommand(hm, type, true);
+        if (c == null) {
+            return null;
+        }
+        return c.getTemplate();
+    }
+
+    public Pattern getCommandPattern(HeadMountable hm, CommandType type) {
+        Command c = getCommand(hm, type, true);
+        if (c == null) {
+            return null;
+        }
+        return c.getPattern();
+    }
+
     public void setCommand(HeadMountable hm, CommandType type, String text) {
         Command c = getCommand(hm, type, false);
         if (text == null || text.trim().length() == 0) {
@@ -505,7 +598,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
         Axis zAxis = getAxis(hm, Axis.Type.Z);
         Axis rotationAxis = getAxis(hm, Axis.Type.Rotation);
         
-        String command = getCommand(hm, CommandType.MOVE_TO_COMMAND);
+        CommandTemplate template = getCommandTemplate(hm, CommandType.MOVE_TO_COMMAND);
+        Map<String, Object> variables = new HashMap<>();
         
         // If the command has forced-output coordinate variables "XF", "YF", "ZF" and "RotationF", 
         // always include the corresponding axis in the command.
@@ -519,10 +613,10 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
         // location such as with Z-probing or relative moves in custom Gcode.
         // Note there is no need for separate backlash compensation variables, as these are always 
         // substituted alongside. 
-        boolean includeX = (xAxis != null && hasVariable(command, "XF"));
-        boolean includeY = (yAxis != null && hasVariable(command, "YF"));
-        boolean includeZ = (zAxis != null && hasVariable(command, "ZF"));
-        boolean includeRotation = (rotationAxis != null && hasVariable(command, "RotationF"));
+        boolean includeX = (xAxis != null && template != null && template.hasVariable("XF"));
+        boolean includeY = (yAxis != null && template != null && template.hasVariable("YF"));
+        boolean includeZ = (zAxis != null && template != null && template.hasVariable("ZF"));
+        boolean includeRotation = (rotationAxis != null && template != null && template.hasVariable("RotationF"));
 
         // Handle NaNs, which means don't move this axis for this move. We set the appropriate
         // axis reference to null, which we'll check for later. If the axis is force-included 
@@ -584,10 +678,10 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
         // Only do something if there at least one axis included in the move
         if (xAxis != null || yAxis != null || zAxis != null || rotationAxis != null) {
 
-            command = substituteVariable(command, "Id", hm.getId());
-            command = substituteVariable(command, "Name", hm.getName());
-            command = substituteVariable(command, "FeedRate", maxFeedRate * speed);
-            command = substituteVariable(command, "BacklashFeedRate", maxFeedRate * speed * backlashFeedRateFactor);
+            variables.put("Id", hm.getId());
+            variables.put("Name", hm.getName());
+            variables.put("FeedRate", maxFeedRate * speed);
+            variables.put("BacklashFeedRate", maxFeedRate * speed * backlashFeedRateFactor);
 
             /**
              * NSF gets applied to X and is multiplied by Y
@@ -616,11 +710,11 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
             
             if (includeX) {
                 double newX = x + nonSquarenessFactor * y;
-                command = substituteVariable(command, "X", newX);
-                command = substituteVariable(command, "XF", newX);
-                command = substituteVariable(command, "BacklashOffsetX", x + backlashOffsetX + nonSquarenessFactor * y); // Backlash Compensation
-                command = substituteVariable(command, "XDecreasing", newX < xAxis.getCoordinate() ? true : null);
-                command = substituteVariable(command, "XIncreasing", newX > xAxis.getCoordinate() ? true : null);
+                variables.put("X", newX);
+                variables.put("XF", newX);
+                variables.put("BacklashOffsetX", x + backlashOffsetX + nonSquarenessFactor * y); // Backlash Compensation
+                variables.put("XDecreasing", newX < xAxis.getCoordinate() ? true : null);
+                variables.put("XIncreasing", newX > xAxis.getCoordinate() ? true : null);
                 if (xAxis.getPreMoveCommand() != null) {
                     String preMoveCommand = xAxis.getPreMoveCommand();
                     preMoveCommand = substituteVariable(preMoveCommand, "Coordinate", xAxis.getCoordinate());
@@ -629,19 +723,19 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
                 xAxis.setCoordinate(x);
             }
             else {
-            	command = substituteVariable(command, "X", null);
-            	command = substituteVariable(command, "XF", null);
-                command = substituteVariable(command, "BacklashOffsetX", null); // Backlash Compensation
-                command = substituteVariable(command, "XDecreasing", null);
-                command = substituteVariable(command, "XIncreasing", null);
+            	variables.put("X", null);
+            	variables.put("XF", null);
+                variables.put("BacklashOffsetX", null); // Backlash Compensation
+                variables.put("XDecreasing", null);
+                variables.put("XIncreasing", null);
             }
 
             if (includeY) {
-            	command = substituteVariable(command, "Y", y);
-            	command = substituteVariable(command, "YF", y);
-                command = substituteVariable(command, "BacklashOffsetY", y + backlashOffsetY); // Backlash Compensation
-                command = substituteVariable(command, "YDecreasing", y < yAxis.getCoordinate() ? true : null);
-                command = substituteVariable(command, "YIncreasing", y > yAxis.getCoordinate() ? true : null);
+            	variables.put("Y", y);
+            	variables.put("YF", y);
+                variables.put("BacklashOffsetY", y + backlashOffsetY); // Backlash Compensation
+                variables.put("YDecreasing", y < yAxis.getCoordinate() ? true : null);
+                variables.put("YIncreasing", y > yAxis.getCoordinate() ? true : null);
                 if (yAxis.getPreMoveCommand() != null) {
                     String preMoveCommand = yAxis.getPreMoveCommand();
                     preMoveCommand = substituteVariable(preMoveCommand, "Coordinate", yAxis.getCoordinate());
@@ -649,19 +743,19 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
                 }
             }
             else {
-            	command = substituteVariable(command, "Y", null);
-            	command = substituteVariable(command, "YF", null);
-                command = substituteVariable(command, "BacklashOffsetY", null); // Backlash Compensation
-                command = substituteVariable(command, "YDecreasing", null);
-                command = substituteVariable(command, "YIncreasing", null);
+            	variables.put("Y", null);
+            	variables.put("YF", null);
+                variables.put("BacklashOffsetY", null); // Backlash Compensation
+                variables.put("YDecreasing", null);
+                variables.put("YIncreasing", null);
             }
 
             if (includeZ) {
-            	command = substituteVariable(command, "Z", z);
-            	command = substituteVariable(command, "ZF", z);
-                command = substituteVariable(command, "BacklashOffsetZ", z + backlashOffsetZ); // Backlash Compensation
-                command = substituteVariable(command, "ZDecreasing", z < zAxis.getCoordinate() ? true : null);
-                command = substituteVariable(command, "ZIncreasing", z > zAxis.getCoordinate() ? true : null);
+            	variables.put("Z", z);
+            	variables.put("ZF", z);
+                variables.put("BacklashOffsetZ", z + backlashOffsetZ); // Backlash Compensation
+                variables.put("ZDecreasing", z < zAxis.getCoordinate() ? true : null);
+                variables.put("ZIncreasing", z > zAxis.getCoordinate() ? true : null);
                 if (zAxis.getPreMoveCommand() != null) {
                     String preMoveCommand = zAxis.getPreMoveCommand();
                     preMoveCommand = substituteVariable(preMoveCommand, "Coordinate", zAxis.getCoordinate());
@@ -669,19 +763,19 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
                 }
             }
             else {
-                command = substituteVariable(command, "Z", null);
-                command = substituteVariable(command, "ZF", null);
-                command = substituteVariable(command, "BacklashOffsetZ", null); // Backlash Compensation
-                command = substituteVariable(command, "ZDecreasing", null);
-                command = substituteVariable(command, "ZIncreasing", null);
+                variables.put("Z", null);
+                variables.put("ZF", null);
+                variables.put("BacklashOffsetZ", null); // Backlash Compensation
+                variables.put("ZDecreasing", null);
+                variables.put("ZIncreasing", null);
             }
 
             if (includeRotation) {
-            	command = substituteVariable(command, "Rotation", rotation);
-            	command = substituteVariable(command, "RotationF", rotation);
-                command = substituteVariable(command, "BacklashOffsetRotation", rotation + backlashOffsetR); // Backlash Compensation
-                command = substituteVariable(command, "RotationDecreasing", rotation < rotationAxis.getCoordinate() ? true : null);
-                command = substituteVariable(command, "RotationIncreasing", rotation > rotationAxis.getCoordinate() ? true : null);
+            	variables.put("Rotation", rotation);
+            	variables.put("RotationF", rotation);
+                variables.put("BacklashOffsetRotation", rotation + backlashOffsetR); // Backlash Compensation
+                variables.put("RotationDecreasing", rotation < rotationAxis.getCoordinate() ? true : null);
+                variables.put("RotationIncreasing", rotation > rotationAxis.getCoordinate() ? true : null);
                 if (rotationAxis.getPreMoveCommand() != null) {
                     String preMoveCommand = rotationAxis.getPreMoveCommand();
                     preMoveCommand = substituteVariable(preMoveCommand, "Coordinate", rotationAxis.getCoordinate());
@@ -689,17 +783,25 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
                 }
             }
             else {
-                command = substituteVariable(command, "Rotation", null);
-                command = substituteVariable(command, "RotationF", null);
-                command = substituteVariable(command, "BacklashOffsetRotation", null); // Backlash Compensation
-                command = substituteVariable(command, "RotationDecreasing", null);
-                command = substituteVariable(command, "RotationIncreasing", null);
+                variables.put("Rotation", null);
+                variables.put("RotationF", null);
+                variables.put("BacklashOffsetRotation", null); // Backlash Compensation
+                variables.put("RotationDecreasing", null);
+                variables.put("RotationIncreasing", null);
             }
 
             // Only give a command when move is necessary
             if (includeX || includeY || includeZ || includeRotation) {
 
-                List<String> responses = sendGcode(command);
+                String command = template == null ? null : template.substitute(variables);
+
+                List<String> responses;
+                if (isStreaming(hm)) {
+                    responses = streamGcode(command);
+                }
+                else {
+                    responses = sendGcode(command);
+                }
 
                 /*
                  * If moveToCompleteRegex is specified we need to wait until we match the regex in a
@@ -709,7 +811,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
                  * matched we continue. If it's not matched within the timeout we throw an
                  * Exception.
                  */
-                String moveToCompleteRegex = getCommand(hm, CommandType.MOVE_TO_COMPLETE_REGEX);
+                Pattern moveToCompleteRegex = getCommandPattern(hm, CommandType.MOVE_TO_COMPLETE_REGEX);
                 if (moveToCompleteRegex != null) {
                     if (!containsMatch(responses, moveToCompleteRegex)) {
                         long t = System.currentTimeMillis();
@@ -751,19 +853,90 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
         // if there was a move
         if (hasMoved) {
             /*
-             * If moveToCompleteCommand is specified, send it
+             * If moveToCompleteCommand is specified, send it. When streaming it is deferred until
+             * the next sync point so that the following moves can be queued behind this one.
              */
-            command = getCommand(hm, CommandType.MOVE_TO_COMPLETE_COMMAND);
-            if (command != null) {
+            String command = getCommand(hm, CommandType.MOVE_TO_COMPLETE_COMMAND);
+            if (isStreaming(hm)) {
+                synchronized (commandLock) {
+                    pendingMoveToCompleteCommand = command;
+                }
+            }
+            else if (command != null) {
                     sendGcode(command);
             }
         }
 
     }
 
-    private boolean containsMatch(List<String> responses, String regex) {
+    /**
+     * Streams the moves of the sequence, holding back the MOVE_TO_COMPLETE_COMMAND until the last
+     * one, so the controller can plan through the corners. Unless streaming is enabled this then
+     * waits for the sequence to complete, as moveTo() would.
+     */
+    @Override
+    public void moveToSequence(ReferenceHeadMountable hm, List<Location> locations, double speed)
+            throws Exception {
+        setSequenceInProgress(true);
+        try {
+            for (Location location : locations) {
+                moveTo(hm, location, speed);
+            }
+        }
+        finally {
+            setSequenceInProgress(false);
+        }
+        if (!streamingEnabled) {
+            waitForCompletion();
+        }
+    }
+
+    private void setSequenceInProgress(boolean sequenceInProgress) {
+        this.sequenceInProgress = sequenceInProgress;
+        for (GcodeDriver driver : subDrivers) {
+            driver.setSequenceInProgress(sequenceInProgress);
+        }
+    }
+
+    /**
+     * Streaming is only used for moves when it is enabled, or a sequence is being sent, and the
+     * move does not need a MOVE_TO_COMPLETE_REGEX, since that regex must be checked against each
+     * move's own responses.
+     */
+    private boolean isStreaming(ReferenceHeadMountable hm) {
+        return (streamingEnabled || sequenceInProgress)
+                && getCommand(hm, CommandType.MOVE_TO_COMPLETE_REGEX) == null;
+    }
+
+    /**
+     * Blocks until every streamed command has been confirmed and, if a MOVE_TO_COMPLETE_COMMAND
+     * was deferred, until it has been sent and confirmed. This is a no-op when nothing is in
+     * flight.
+     */
+    @Override
+    public void waitForCompletion() throws Exception {
+        // Hold the lock while the deferred command is sent, so that a move from another thread
+        // can't set a new one in between.
+        synchronized (commandLock) {
+            String command = pendingMoveToCompleteCommand;
+            pendingMoveToCompleteCommand = null;
+            if (command != null) {
+                // sendGcode() retires all commands in flight before sending.
+                sendGcode(command);
+            }
+            else {
+                retireCommandsInFlight(0, new ArrayList<>());
+            }
+        }
+
+        for (ReferenceDriver driver : subDrivers) {
+            driver.waitForCompletion();
+        }
+    }
+
+    private boolean containsMatch(List<String> responses, Pattern regex) {
         for (String response : responses) {
-            if (response.matches(regex)) {
+            if (regex.matcher(response).matches()) {
                 return true;
             }
         }
@@ -772,40 +945,83 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
 
     @Override
     public void actuate(ReferenceActuator actuator, boolean on) throws Exception {
-        String command = getCommand(actuator, CommandType.ACTUATE_BOOLEAN_COMMAND);
-        command = substituteVariable(command, "Id", actuator.getId());
-        command = substituteVariable(command, "Name", actuator.getName());
-        command = substituteVariable(command, "Index", actuator.getIndex());
-        command = substituteVariable(command, "BooleanValue", on);
-        command = substituteVariable(command, "True", on ? on : null);
-        command = substituteVariable(command, "False", on ? null : on);
-        sendGcode(command);
+        waitForCompletion();
+        
+        sendActuate(actuator, on);
 
         for (ReferenceDriver driver : subDrivers) {
             driver.actuate(actuator, on);
         }
     }
 
+    /**
+     * Sends the actuate command behind any moves that are still in flight, without the deferred
+     * MOVE_TO_COMPLETE_COMMAND, so that with streaming enabled the controller gets it while the
+     * head is moving.
+     */
+    @Override
+    public void actuateQueued(ReferenceActuator actuator, boolean on) throws Exception {
+        sendActuate(actuator, on);
+
+        for (ReferenceDriver driver : subDrivers) {
+            driver.actuateQueued(actuator, on);
+        }
+    }
+
+    private void sendActuate(ReferenceActuator actuator, boolean on) throws Exception {
+        CommandTemplate template = getCommandTemplate(actuator, CommandType.ACTUATE_BOOLEAN_COMMAND);
+        if (template != null) {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("Id", actuator.getId());
+            variables.put("Name", actuator.getName());
+            variables.put("Index", actuator.getIndex());
+            variables.put("BooleanValue", on);
+            variables.put("True", on ? on : null);
+            variables.put("False", on ? null : on);
+            sendGcode(template.substitute(variables));
+        }
+    }
+
     @Override
     public void actuate(ReferenceActuator actuator, double value) throws Exception {
-        String command = getCommand(actuator, CommandType.ACTUATE_DOUBLE_COMMAND);
-        command = substituteVariable(command, "Id", actuator.getId());
-        command = substituteVariable(command, "Name", actuator.getName());
-        command = substituteVariable(command, "Index", actuator.getIndex());
-        command = substituteVariable(command, "DoubleValue", value);
-        command = substituteVariable(command, "IntegerValue", (int) value);
-        sendGcode(command);
+        waitForCompletion();
+        
+        sendActuate(actuator, value);
 
         for (ReferenceDriver driver : subDrivers) {
             driver.actuate(actuator, value);
         }
     }
+
+    @Override
+    public void actuateQueued(ReferenceActuator actuator, double value) throws Exception {
+        sendActuate(actuator, value);
+
+        for (ReferenceDriver driver : subDrivers) {
+            driver.actuateQueued(actuator, value);
+        }
+    }
+
+    private void sendActuate(ReferenceActuator actuator, double value) throws Exception {
+        CommandTemplate template = getCommandTemplate(actuator, CommandType.ACTUATE_DOUBLE_COMMAND);
+        if (template != null) {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("Id", actuator.getId());
+            variables.put("Name", actuator.getName());
+            variables.put("Index", actuator.getIndex());
+            variables.put("DoubleValue", value);
+            variables.put("IntegerValue", (int) value);
+            sendGcode(template.substitute(variables));
+        }
+    }
     
     @Override
     public String actuatorRead(ReferenceActuator actuator) throws Exception {
-        String command = getCommand(actuator, CommandType.ACTUATOR_READ_COMMAND);
-        String regex = getCommand(actuator, CommandType.ACTUATOR_READ_REGEX);
-        if (command == null || regex == null) {
+        waitForCompletion();
+        
+        CommandTemplate template = getCommandTemplate(actuator, CommandType.ACTUATOR_READ_COMMAND);
+        Pattern regex = getCommandPattern(actuator, CommandType.ACTUATOR_READ_REGEX);
+        if (template == null || regex == null) {
             // If the command or regex is null we'll query the subdrivers. The first
             // to respond with a non-null value wins.
             for (ReferenceDriver driver : subDrivers) {
@@ -819,17 +1035,17 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
             return null;
         }
 
-        command = substituteVariable(command, "Id", actuator.getId());
-        command = substituteVariable(command, "Name", actuator.getName());
-        command = substituteVariable(command, "Index", actuator.getIndex());
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("Id", actuator.getId());
+        variables.put("Name", actuator.getName());
+        variables.put("Index", actuator.getIndex());
 
-        List<String> responses = sendGcode(command);
+        List<String> responses = sendGcode(template.substitute(variables));
 
         for (String line : responses) {
-            if (line.matches(regex)) {
+            Matcher matcher = regex.matcher(line);
+            if (matcher.matches()) {
                 Logger.trace("actuatorRead response: {}", line);
-                Matcher matcher = Pattern.compile(regex).matcher(line);
-                matcher.matches();
 
                 try {
                     String s = matcher.group("Value");
@@ -846,9 +1062,11 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
 
     @Override
     public String actuatorRead(ReferenceActuator actuator, double parameter) throws Exception {
-        String command = getCommand(actuator, CommandType.ACTUATOR_READ_WITH_DOUBLE_COMMAND);
-        String regex = getCommand(actuator, CommandType.ACTUATOR_READ_REGEX);
-        if (command == null || regex == null) {
+        waitForCompletion();
+        
+        CommandTemplate template = getCommandTemplate(actuator, CommandType.ACTUATOR_READ_WITH_DOUBLE_COMMAND);
+        Pattern regex = getCommandPattern(actuator, CommandType.ACTUATOR_READ_REGEX);
+        if (template == null || regex == null) {
             // If the command or regex is null we'll query the subdrivers. The first
             // to respond with a non-null value wins.
             for (ReferenceDriver driver : subDrivers) {
@@ -862,19 +1080,19 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
             return null;
         }
 
-        command = substituteVariable(command, "Id", actuator.getId());
-        command = substituteVariable(command, "Name", actuator.getName());
-        command = substituteVariable(command, "Index", actuator.getIndex());
-        command = substituteVariable(command, "DoubleValue", parameter);
-        command = substituteVariable(command, "IntegerValue", (int) parameter);
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("Id", actuator.getId());
+        variables.put("Name", actuator.getName());
+        variables.put("Index", actuator.getIndex());
+        variables.put("DoubleValue", parameter);
+        variables.put("IntegerValue", (int) parameter);
 
-        List<String> responses = sendGcode(command);
+        List<String> responses = sendGcode(template.substitute(variables));
 
         for (String line : responses) {
-            if (line.matches(regex)) {
+            Matcher matcher = regex.matcher(line);
+            if (matcher.matches()) {
                 Logger.trace("actuatorReadWithDouble response: {}", line);
-                Matcher matcher = Pattern.compile(regex).matcher(line);
-                matcher.matches();
 
                 try {
                     String s = matcher.group("Value");
@@ -892,6 +1110,10 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
     public synchronized void disconnect() {
         disconnectRequested = true;
         connected = false;
+        synchronized (commandLock) {
+            commandsInFlight.clear();
+            pendingMoveToCompleteCommand = null;
+        }
 
         try {
             if (readerThread != null && readerThread.isAlive()) {
@@ -944,8 +1166,18 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
     }
 
     public List<String> sendCommand(String command, long timeout) throws Exception {
+        synchronized (commandLock) {
+            return sendCommandLocked(command, timeout);
+        }
+    }
+
+    private List<String> sendCommandLocked(String command, long timeout) throws Exception {
         List<String> responses = new ArrayList<>();
 
+        // If commands were streamed, wait for all of them to be confirmed so that the
+        // confirmation we wait for below belongs to this command.
+        retireCommandsInFlight(0, responses);
+
         // Read any responses that might be queued up so that when we wait
         // for a response to a command we actually wait for the one we expect.
         responseQueue.drainTo(responses);
@@ -960,12 +1192,15 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
             Logger.trace("[{}] >> {}", getCommunications().getConnectionName(), command);
             getCommunications().writeLine(command);
         }
+        long sentNanos = System.nanoTime();
 
         // Collect responses till we find one with the confirmation or we timeout. Return
         // the collected responses.
         if (timeout == -1) {
             timeout = Long.MAX_VALUE;
         }
+        Pattern confirmRegex = getCommandPattern(null, CommandType.COMMAND_CONFIRM_REGEX);
+        Pattern errorRegex = getCommandPattern(null, CommandType.COMMAND_ERROR_REGEX);
         long t = System.currentTimeMillis();
         boolean found = false;
         boolean foundError = false;
@@ -983,13 +1218,16 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
             // Store the response that was received
             responses.add(response);
             // If the response is an ok or error we're done
-            if (response.matches(getCommand(null, CommandType.COMMAND_CONFIRM_REGEX))) {
+            if (confirmRegex.matcher(response).matches()) {
                 found = true;
+                if (command != null) {
+                    Metrics.record("driver.roundTrip", System.nanoTime() - sentNanos);
+                }
                 break;
             }
 
-            if (getCommand(null, CommandType.COMMAND_ERROR_REGEX) != null) {
-                if (response.matches(getCommand(null, CommandType.COMMAND_ERROR_REGEX))) {
+            if (errorRegex != null) {
+                if (errorRegex.matcher(response).matches()) {
                     foundError = true;
                     errorResponse = response;
                     break;
@@ -1012,6 +1250,104 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
         return responses;
     }
 
+    /**
+     * Send the lines of gCode without waiting for each to be confirmed. See streamCommand().
+     */
+    protected List<String> streamGcode(String gCode) throws Exception {
+        List<String> responses = new ArrayList<>();
+        if (gCode == null) {
+            return responses;
+        }
+        for (String command : gCode.split("\n")) {
+            command = command.trim();
+            if (command.length() == 0) {
+                continue;
+            }
+            responses.addAll(streamCommand(command));
+        }
+        return responses;
+    }
+
+    /**
+     * Send a command without waiting for its confirmation. If maxCommandsInFlight commands are
+     * already unconfirmed this blocks until the oldest of them is confirmed. Any responses that
+     * were received while doing so are returned.
+     */
+    public List<String> streamCommand(String command) throws Exception {
+        synchronized (commandLock) {
+            return streamCommandLocked(command);
+        }
+    }
+
+    private List<String> streamCommandLocked(String command) throws Exception {
+        List<String> responses = new ArrayList<>();
+
+        // Wait for a free slot in the controller's buffer.
+        retireCommandsInFlight(Math.max(1, maxCommandsInFlight) - 1, responses);
+
+        if (backslashEscapedCharactersEnabled) {
+            command = unescape(command);
+        }
+        Logger.trace("[{}] >> {}", getCommunications().getConnectionName(), command);
+        getCommunications().writeLine(command);
+        commandsInFlight.add(command);
+
+        // Collect any confirmations that have already arrived, without blocking.
+        while (!commandsInFlight.isEmpty() && retireCommandInFlight(responses, 0)) {
+        }
+
+        Logger.debug("streamCommand({} {}) => {}, {} in flight",
+                new Object[] {getCommunications().getConnectionName(), command, responses, commandsInFlight.size()});
+        return responses;
+    }
+
+    /**
+     * Wait until no more than maxInFlight commands are unconfirmed. Throws if a confirmation
+     * does not arrive within the timeout or if the controller reports an error. Must be called
+     * holding commandLock.
+     */
+    private void retireCommandsInFlight(int maxInFlight, List<String> responses) throws Exception {
+        while (commandsInFlight.size() > maxInFlight) {
+            if (!retireCommandInFlight(responses, timeoutMilliseconds)) {
+                String command = commandsInFlight.peek();
+                commandsInFlight.clear();
+                throw new Exception("Timeout waiting for response to " + command);
+            }
+        }
+    }
+
+    /**
+     * Wait up to timeout milliseconds for the confirmation of the oldest command in flight,
+     * adding any responses received to responses. Returns true if the command was confirmed.
+     */
+    private boolean retireCommandInFlight(List<String> responses, long timeout) throws Exception {
+        String command = commandsInFlight.peek();
+        Pattern confirmRegex = getCommandPattern(null, CommandType.COMMAND_CONFIRM_REGEX);
+        Pattern errorRegex = getCommandPattern(null, CommandType.COMMAND_ERROR_REGEX);
+        long t = System.currentTimeMillis();
+        do {
+            String response = responseQueue.poll(
+                    Math.max(0, timeout - (System.currentTimeMillis() - t)),
+                    TimeUnit.MILLISECONDS);
+            if (response == null) {
+                continue;
+            }
+            responses.add(response);
+            if (confirmRegex.matcher(response).matches()) {
+                commandsInFlight.poll();
+                Logger.trace("[{}] confirmed {}", getCommunications().getConnectionName(), command);
+                return true;
+            }
+            if (errorRegex != null) {
+                if (errorRegex.matcher(response).matches()) {
+                    commandsInFlight.clear();
+                    throw new Exception("Controller raised an error: " + response + " in response to " + command);
+                }
+            }
+        } while (System.currentTimeMillis() - t < timeout);
+        return false;
+    }
+
     public void run() {
         while (!disconnectRequested) {
             String line;
@@ -1036,18 +1372,17 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
     }
 
     private boolean processPositionReport(String line) {
-        if (getCommand(null, CommandType.POSITION_REPORT_REGEX) == null) {
+        Pattern positionReportRegex = getCommandPattern(null, CommandType.POSITION_REPORT_REGEX);
+        if (positionReportRegex == null) {
             return false;
         }
 
-        if (!line.matches(getCommand(null, CommandType.POSITION_REPORT_REGEX))) {
+        Matcher matcher = positionReportRegex.matcher(line);
+        if (!matcher.matches()) {
             return false;
         }
 
         Logger.trace("Position report: {}", line);
-        Matcher matcher =
-                Pattern.compile(getCommand(null, CommandType.POSITION_REPORT_REGEX)).matcher(line);
-        matcher.matches();
         for (Axis axis : axes) {
             try {
                 String s = matcher.group(axis.getName());
@@ -1076,7 +1411,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
             return command;
         }
         StringBuffer sb = new StringBuffer();
-        Matcher matcher = Pattern.compile("\\{(\\w+)(?::(.+?))?\\}").matcher(command);
+        Matcher matcher = CommandTemplate.VARIABLE_PATTERN.matcher(command);
         while (matcher.find()) {
             String n = matcher.group(1);
             if (!n.equals(name)) {
@@ -1102,7 +1437,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
         if (command == null) {
             return false;
         }
-        Matcher matcher = Pattern.compile("\\{(\\w+)(?::(.+?))?\\}").matcher(command);
+        Matcher matcher = CommandTemplate.VARIABLE_PATTERN.matcher(command);
         while (matcher.find()) {
             String n = matcher.group(1);
             if (!n.equals(name)) {
@@ -1289,6 +1624,22 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named, Runna
         this.backslashEscapedCharactersEnabled = backslashEscapedCharactersEnabled;
     }
 
+    public boolean isStreamingEnabled() {
+        return streamingEnabled;
+    }
+
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+
+    public int getMaxCommandsInFlight() {
+        return maxCommandsInFlight;
+    }
+
+    public void setMaxCommandsInFlight(int maxCommandsInFlight) {
+        this.maxCommandsInFlight = maxCommandsInFlight;
+    }
+
     public static class Axis {
         public enum Type {
             X,
@@ -224,15 +224,20 @@ public class NullDriver implements ReferenceDriver {
     public void actuate(ReferenceActuator actuator, double value) throws Exception {
         Logger.debug("actuate({}, {})", actuator, value);
         checkEnabled();
-        if (feedRateMmPerMinute > 0) {
-            Thread.sleep(500);
-        }
+        simulateActuation(actuator);
     }
 
     @Override
     public void actuate(ReferenceActuator actuator, boolean on) throws Exception {
         Logger.debug("actuate({}, {})", actuator, on);
         checkEnabled();
+        simulateActuation(actuator);
+    }
+
+    /**
+     * Simulates the time an actuator takes to respond.
+     */
+    protected void simulateActuation(ReferenceActuator actuator) throws Exception {
         if (feedRateMmPerMinute > 0) {
             Thread.sleep(500);
         }
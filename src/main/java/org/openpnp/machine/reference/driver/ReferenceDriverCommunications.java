@@ -20,6 +20,8 @@
 package org.openpnp.machine.reference.driver;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.TimeoutException;
 
 import org.simpleframework.xml.Attribute;
@@ -29,6 +31,10 @@ import org.simpleframework.xml.Attribute;
  *
  * This Driver interface is intended to model the minimum required functions to transfer
  * data from OpenPnP to a hardware controller.
+ *
+ * Received data is read in bulk through readBytes() into a buffer that readLine() and read()
+ * both consume, so framing lines costs no calls into the port and no allocation per byte.
+ * readLine() and read() are meant to be called from a single reader thread.
  */
 public abstract class ReferenceDriverCommunications {
     public enum LineEndingType {
@@ -50,16 +56,145 @@ public abstract class ReferenceDriverCommunications {
     @Attribute(required=false)
     protected LineEndingType lineEndingType = LineEndingType.LF;
 
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private int readPosition;
+    private int readLimit;
+
+    /**
+     * System.nanoTime() when the data in readBuffer was received.
+     */
+    private long readNanos;
+
+    /**
+     * The line being framed. It is kept across calls so that a partial line survives a read
+     * timeout.
+     */
+    private byte[] lineBuffer = new byte[256];
+    private int lineLength;
+
+    private volatile long lineReceivedNanos;
+
     abstract public void connect() throws Exception;
     abstract public void disconnect() throws Exception;
 
     abstract public String getConnectionName();
 
-    abstract public String readLine() throws TimeoutException, IOException;
-    abstract public void writeLine(String data) throws IOException;
+    /**
+     * Reads at least one and at most length bytes into buffer, blocking for the default timeout.
+     * Returns the number of bytes read, or -1 at the end of the stream. If the read times out a
+     * TimeoutException is thrown.
+     */
+    abstract protected int readBytes(byte[] buffer, int offset, int length)
+            throws TimeoutException, IOException;
+
+    /**
+     * Writes all of the bytes in a single call to the underlying port.
+     */
+    abstract protected void writeBytes(byte[] buffer) throws IOException;
+
+    /**
+     * Read a line, not including the line ending. Empty lines are skipped. Blocks for the
+     * default timeout. If the read times out a TimeoutException is thrown. Returns null at the
+     * end of the stream.
+     */
+    public String readLine() throws TimeoutException, IOException {
+        while (true) {
+            if (readPosition == readLimit && !fillReadBuffer()) {
+                return null;
+            }
+            while (readPosition < readLimit) {
+                byte b = readBuffer[readPosition++];
+                if (b == '\n' || b == '\r') {
+                    if (lineLength > 0) {
+                        String line = new String(lineBuffer, 0, lineLength,
+                                StandardCharsets.ISO_8859_1);
+                        lineLength = 0;
+                        lineReceivedNanos = readNanos;
+                        return line;
+                    }
+                }
+                else {
+                    if (lineLength == lineBuffer.length) {
+                        lineBuffer = Arrays.copyOf(lineBuffer, lineBuffer.length * 2);
+                    }
+                    lineBuffer[lineLength++] = b;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the data followed by the line ending in a single write.
+     */
+    public void writeLine(String data) throws IOException {
+        writeBytes((data + getLineEndingType().getLineEnding()).getBytes());
+    }
+
+    /**
+     * Read a single byte, 0 to 255. Blocks for the default timeout. If the read times out a
+     * TimeoutException is thrown. Returns -1 at the end of the stream.
+     */
+    public int read() throws TimeoutException, IOException {
+        if (readPosition == readLimit && !fillReadBuffer()) {
+            return -1;
+        }
+        return readBuffer[readPosition++] & 0xff;
+    }
+
+    /**
+     * Reads up to length bytes into buffer, blocking for the default timeout only if nothing is
+     * buffered. Returns the number of bytes read, or -1 at the end of the stream.
+     */
+    public int read(byte[] buffer, int offset, int length) throws TimeoutException, IOException {
+        if (readPosition == readLimit && !fillReadBuffer()) {
+            return -1;
+        }
+        length = Math.min(length, readLimit - readPosition);
+        System.arraycopy(readBuffer, readPosition, buffer, offset, length);
+        readPosition += length;
+        return length;
+    }
+
+    public void write(int d) throws IOException {
+        writeBytes(new byte[] {(byte) d});
+    }
+
+    /**
+     * Writes all of the bytes in a single write.
+     */
+    public void write(byte[] data) throws IOException {
+        writeBytes(data);
+    }
+
+    /**
+     * Returns the System.nanoTime() at which the end of the last line returned by readLine() was
+     * received from the port, for measuring latency.
+     */
+    public long getLineReceivedNanos() {
+        return lineReceivedNanos;
+    }
 
-    abstract public int read() throws TimeoutException, IOException;
-    abstract public void write(int d) throws IOException;
+    /**
+     * Discards any buffered data. Called when a connection is opened.
+     */
+    protected void clearReadBuffer() {
+        readPosition = 0;
+        readLimit = 0;
+        lineLength = 0;
+    }
+
+    private boolean fillReadBuffer() throws TimeoutException, IOException {
+        int length = readBytes(readBuffer, 0, readBuffer.length);
+        if (length < 0) {
+            return false;
+        }
+        readPosition = 0;
+        readLimit = length;
+        readNanos = System.nanoTime();
+        return true;
+    }
     
     public void setLineEndingType(LineEndingType lineEndingType) {
         this.lineEndingType = lineEndingType;
@@ -0,0 +1,199 @@
+package org.openpnp.machine.reference.driver;
+
+import org.openpnp.machine.reference.ReferenceActuator;
+import org.openpnp.machine.reference.ReferenceHeadMountable;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Location;
+import org.openpnp.util.VirtualClock;
+import org.simpleframework.xml.Attribute;
+
+/**
+ * A NullDriver that predicts how long each move and actuation would take on a physical machine,
+ * from per axis velocity and acceleration limits and an actuator latency, and waits for that
+ * long.
+ *
+ * With virtual time enabled, the default, waiting advances the VirtualClock instead of sleeping,
+ * so a whole job runs headless as fast as the planning and vision allow, while the job
+ * processor's timings and the reported CPH are those the modeled machine would achieve. This is
+ * intended for comparing planners and machine settings without the machine.
+ *
+ * Moves are modeled as each axis accelerating to its velocity limit, scaled by the move speed,
+ * and decelerating to a stop. The axes move at the same time, so a move takes as long as its
+ * slowest axis. Velocities are in mm/s, or degrees/s for C, and accelerations in mm/s², or
+ * degrees/s² for C.
+ */
+public class SimulationDriver extends NullDriver {
+    @Attribute(required = false)
+    private boolean virtualTime = true;
+
+    @Attribute(required = false)
+    private double velocityX = 500;
+
+    @Attribute(required = false)
+    private double velocityY = 500;
+
+    @Attribute(required = false)
+    private double velocityZ = 100;
+
+    @Attribute(required = false)
+    private double velocityC = 1000;
+
+    @Attribute(required = false)
+    private double accelerationX = 3000;
+
+    @Attribute(required = false)
+    private double accelerationY = 3000;
+
+    @Attribute(required = false)
+    private double accelerationZ = 2000;
+
+    @Attribute(required = false)
+    private double accelerationC = 10000;
+
+    @Attribute(required = false)
+    private long actuatorLatencyMilliseconds = 20;
+
+    @Override
+    public void setEnabled(boolean enabled) throws Exception {
+        super.setEnabled(enabled);
+        VirtualClock.setEnabled(enabled && virtualTime);
+    }
+
+    @Override
+    protected void simulateMovement(ReferenceHeadMountable hm, Location location, Location hl,
+            double speed) throws Exception {
+        double x2 = Double.isNaN(location.getX()) ? hl.getX() : location.getX();
+        double y2 = Double.isNaN(location.getY()) ? hl.getY() : location.getY();
+        double z2 = Double.isNaN(location.getZ()) ? hl.getZ() : location.getZ();
+        double c2 = Double.isNaN(location.getRotation()) ? hl.getRotation()
+                : location.getRotation() % 360.0;
+
+        double seconds = Math.max(
+                Math.max(getMoveSeconds(x2 - hl.getX(), velocityX * speed, accelerationX),
+                        getMoveSeconds(y2 - hl.getY(), velocityY * speed, accelerationY)),
+                Math.max(getMoveSeconds(z2 - hl.getZ(), velocityZ * speed, accelerationZ),
+                        getMoveSeconds(c2 - hl.getRotation(), velocityC * speed,
+                                accelerationC)));
+
+        waitFor((long) (seconds * 1e9));
+
+        ((ReferenceMachine) Configuration.get().getMachine())
+                .fireMachineHeadActivity(hm.getHead());
+    }
+
+    @Override
+    protected void simulateActuation(ReferenceActuator actuator) throws Exception {
+        waitFor(actuatorLatencyMilliseconds * 1000000);
+    }
+
+    /**
+     * Returns the time a single axis takes to travel the distance from standstill to standstill
+     * with a trapezoidal velocity profile, or a triangular one if the distance is too short to
+     * reach the velocity.
+     */
+    static double getMoveSeconds(double distance, double velocity, double acceleration) {
+        distance = Math.abs(distance);
+        if (distance == 0 || velocity <= 0) {
+            return 0;
+        }
+        if (acceleration <= 0) {
+            return distance / velocity;
+        }
+        // Distance covered while accelerating to velocity and decelerating back to zero.
+        double rampDistance = velocity * velocity / acceleration;
+        if (distance >= rampDistance) {
+            return distance / velocity + velocity / acceleration;
+        }
+        return 2 * Math.sqrt(distance / acceleration);
+    }
+
+    private void waitFor(long nanos) throws InterruptedException {
+        if (VirtualClock.isEnabled()) {
+            VirtualClock.advance(nanos);
+        }
+        else {
+            Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+        }
+    }
+
+    public boolean isVirtualTime() {
+        return virtualTime;
+    }
+
+    public void setVirtualTime(boolean virtualTime) {
+        this.virtualTime = virtualTime;
+    }
+
+    public double getVelocityX() {
+        return velocityX;
+    }
+
+    public void setVelocityX(double velocityX) {
+        this.velocityX = velocityX;
+    }
+
+    public double getVelocityY() {
+        return velocityY;
+    }
+
+    public void setVelocityY(double velocityY) {
+        this.velocityY = velocityY;
+    }
+
+    public double getVelocityZ() {
+        return velocityZ;
+    }
+
+    public void setVelocityZ(double velocityZ) {
+        this.velocityZ = velocityZ;
+    }
+
+    public double getVelocityC() {
+        return velocityC;
+    }
+
+    public void setVelocityC(double velocityC) {
+        this.velocityC = velocityC;
+    }
+
+    public double getAccelerationX() {
+        return accelerationX;
+    }
+
+    public void setAccelerationX(double accelerationX) {
+        this.accelerationX = accelerationX;
+    }
+
+    public double getAccelerationY() {
+        return accelerationY;
+    }
+
+    public void setAccelerationY(double accelerationY) {
+        this.accelerationY = accelerationY;
+    }
+
+    public double getAccelerationZ() {
+        return accelerationZ;
+    }
+
+    public void setAccelerationZ(double accelerationZ) {
+        this.accelerationZ = accelerationZ;
+    }
+
+    public double getAccelerationC() {
+        return accelerationC;
+    }
+
+    public void setAccelerationC(double accelerationC) {
+        this.accelerationC = accelerationC;
+    }
+
+    public long getActuatorLatencyMilliseconds() {
+        return actuatorLatencyMilliseconds;
+    }
+
+    public void setActuatorLatencyMilliseconds(long actuatorLatencyMilliseconds) {
+        this.actuatorLatencyMilliseconds = actuatorLatencyMilliseconds;
+    }
+}
@@ -1,14 +1,12 @@
 package org.openpnp.machine.reference.driver;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.util.concurrent.TimeoutException;
 
-import org.openpnp.machine.reference.driver.ReferenceDriverCommunications.LineEndingType;
 import org.simpleframework.xml.Attribute;
 
 /**
@@ -27,14 +25,15 @@ public class TcpCommunications extends ReferenceDriverCommunications {
 
 
     protected Socket clientSocket;
-    protected BufferedReader input;
-    protected DataOutputStream output;
+    protected InputStream input;
+    protected OutputStream output;
 
     public synchronized void connect() throws Exception {
         disconnect();
         clientSocket = new Socket(ipAddress,port);
-        input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-        output = new DataOutputStream(clientSocket.getOutputStream());
+        input = clientSocket.getInputStream();
+        output = clientSocket.getOutputStream();
+        clearReadBuffer();
     }
 
     public synchronized void disconnect() throws Exception {
@@ -50,54 +49,18 @@ public class TcpCommunications extends ReferenceDriverCommunications {
         return "tcp://" + ipAddress + ":" + port;
     }
 
-    /**
-     * Read a line from the socket. Blocks for the default timeout. If the read times out a
-     * TimeoutException is thrown. Any other failure to read results in an IOExeption;
-     * 
-     * @return
-     * @throws TimeoutException
-     * @throws IOException
-     */
-    public String readLine() throws TimeoutException, IOException {
-        StringBuffer line = new StringBuffer();
-        while (true) {
-            try {
-                int ch = input.read();
-                if (ch == -1) {
-                    return null;
-                }
-                else if (ch == '\n' || ch == '\r') {
-                    if (line.length() > 0) {
-                        return line.toString();
-                    }
-                }
-                else {
-                    line.append((char) ch);
-                }
-            }
-            catch (IOException ex) {
-                if (ex.getCause() instanceof SocketTimeoutException) {
-                    throw new TimeoutException(ex.getMessage());
-                }
-                throw ex;
-            }
-        }
-    }
-
-    public void writeLine(String data) throws IOException
-    {
+    @Override
+    protected int readBytes(byte[] buffer, int offset, int length)
+            throws TimeoutException, IOException {
         try {
-            output.write(data.getBytes());
-            output.write(getLineEndingType().getLineEnding().getBytes());
-        }
-        catch (IOException ex) {
-            throw ex;
+            int l = input.read(buffer, offset, length);
+            if (l == 0) {
+                throw new TimeoutException("Read timeout.");
+            }
+            return l;
         }
-    }
-    
-    public int read() throws TimeoutException, IOException {
-        try {
-            return input.read();
+        catch (SocketTimeoutException ex) {
+            throw new TimeoutException(ex.getMessage());
         }
         catch (IOException ex) {
             if (ex.getCause() instanceof SocketTimeoutException) {
@@ -106,9 +69,10 @@ public class TcpCommunications extends ReferenceDriverCommunications {
             throw ex;
         }
     }
-    
-    public void write(int d) throws IOException {
-        output.write(d);
+
+    @Override
+    protected void writeBytes(byte[] buffer) throws IOException {
+        output.write(buffer);
     }
 
     public String getIpAddress() {
@@ -76,6 +76,8 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,}));
         
         JLabel lblUnits = new JLabel("Units");
@@ -173,6 +175,24 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
                 + "where xxxx is four hexidecimal characters.  Also permits \\t for tab, \\b for backspace, \\n for line "
                 + "feed, \\r for carriage return, and \\f for form feed.");
         settingsPanel.add(backslashEscapedCharacters, "4, 14");
+        
+        JLabel lblStreaming = new JLabel("Stream Moves");
+        lblStreaming.setToolTipText("Send moves without waiting for each one to be confirmed, so the "
+                + "controller can plan several moves ahead. The driver waits for the moves to complete "
+                + "before actuating, reading actuators or capturing images.");
+        settingsPanel.add(lblStreaming, "6, 14, right, default");
+        
+        streaming = new JCheckBox("");
+        settingsPanel.add(streaming, "8, 14");
+        
+        JLabel lblMaxCommandsInFlight = new JLabel("Max Commands In Flight");
+        lblMaxCommandsInFlight.setToolTipText("The number of unconfirmed commands allowed when "
+                + "streaming. Should not exceed the controller's command buffer size.");
+        settingsPanel.add(lblMaxCommandsInFlight, "2, 16, right, default");
+        
+        maxCommandsInFlightTf = new JTextField();
+        settingsPanel.add(maxCommandsInFlightTf, "4, 16, fill, default");
+        maxCommandsInFlightTf.setColumns(5);
     }
 
     @Override
@@ -195,6 +215,8 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
         addWrappedBinding(driver, "name", driverName, "text");
         addWrappedBinding(driver, "visualHomingEnabled", visualHoming, "selected");
         addWrappedBinding(driver, "backslashEscapedCharactersEnabled", backslashEscapedCharacters, "selected");
+        addWrappedBinding(driver, "streamingEnabled", streaming, "selected");
+        addWrappedBinding(driver, "maxCommandsInFlight", maxCommandsInFlightTf, "text", intConverter);
         
         ComponentDecorators.decorateWithAutoSelect(maxFeedRateTf);
         ComponentDecorators.decorateWithAutoSelect(backlashOffsetXTf);
@@ -206,6 +228,7 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
         ComponentDecorators.decorateWithAutoSelect(commandTimeoutTf);
         ComponentDecorators.decorateWithAutoSelect(connectWaitTimeTf);
         ComponentDecorators.decorateWithAutoSelect(driverName);
+        ComponentDecorators.decorateWithAutoSelect(maxCommandsInFlightTf);
     }
 
     public final Action exportProfileAction = new AbstractAction() {
@@ -347,6 +370,8 @@ public class GcodeDriverSettings extends AbstractConfigurationWizard {
     private JTextField driverName;
     private JCheckBox visualHoming;
     private JCheckBox backslashEscapedCharacters;
+    private JCheckBox streaming;
+    private JTextField maxCommandsInFlightTf;
 
     static class HeadMountableItem {
         private HeadMountable hm;
@@ -22,6 +22,7 @@ package org.openpnp.machine.reference.feeder;
 import javax.swing.Action;
 
 import org.openpnp.gui.support.Wizard;
+import org.openpnp.machine.reference.ReferenceActuator;
 import org.openpnp.machine.reference.ReferenceFeeder;
 import org.openpnp.machine.reference.feeder.wizards.ReferenceAutoFeederConfigurationWizard;
 import org.openpnp.model.Configuration;
@@ -67,16 +68,9 @@ public class ReferenceAutoFeeder extends ReferenceFeeder {
 
     @Override
     public void feed(Nozzle nozzle) throws Exception {
-        if (actuatorName == null || actuatorName.equals("")) {
-            Logger.warn("No actuatorName specified for feeder {}.", getName());
-            return;
-        }
-        Actuator actuator = nozzle.getHead().getActuatorByName(actuatorName);
+        Actuator actuator = getFeedActuator(nozzle);
         if (actuator == null) {
-            actuator = Configuration.get().getMachine().getActuatorByName(actuatorName);
-        }
-        if (actuator == null) {
-            throw new Exception("Feed failed. Unable to find an actuator named " + actuatorName);
+            return;
         }
         if (isMoveBeforeFeed()) {
             MovableUtils.moveToLocationAtSafeZ(nozzle, getPickLocation().derive(null, null, Double.NaN, null));
@@ -89,6 +83,53 @@ public class ReferenceAutoFeeder extends ReferenceFeeder {
         }
     }
     
+    /**
+     * Fires the feed actuator without waiting for the head to stop, if the driver supports it,
+     * so the feed happens while the head is busy placing.
+     */
+    @Override
+    public void prefeed(Nozzle nozzle) throws Exception {
+        Actuator actuator = getFeedActuator(nozzle);
+        if (actuator == null) {
+            return;
+        }
+        if (!(actuator instanceof ReferenceActuator)) {
+            feed(nozzle);
+            return;
+        }
+        ReferenceActuator referenceActuator = (ReferenceActuator) actuator;
+        if (actuatorType == ActuatorType.Boolean) {
+            referenceActuator.actuateQueued(actuatorValue != 0);
+        }
+        else {
+            referenceActuator.actuateQueued(actuatorValue);
+        }
+    }
+    
+    private Actuator getFeedActuator(Nozzle nozzle) throws Exception {
+        if (actuatorName == null || actuatorName.equals("")) {
+            Logger.warn("No actuatorName specified for feeder {}.", getName());
+            return null;
+        }
+        Actuator actuator = nozzle.getHead().getActuatorByName(actuatorName);
+        if (actuator == null) {
+            actuator = Configuration.get().getMachine().getActuatorByName(actuatorName);
+        }
+        if (actuator == null) {
+            throw new Exception("Feed failed. Unable to find an actuator named " + actuatorName);
+        }
+        return actuator;
+    }
+    
+    /**
+     * Feeding only fires the actuator, so it can be done ahead of time unless the head has to
+     * be moved to the feeder first.
+     */
+    @Override
+    public boolean isPrefeedCapable() {
+        return !isMoveBeforeFeed();
+    }
+
     @Override
     public void postPick(Nozzle nozzle) throws Exception {
         if (postPickActuatorName == null || postPickActuatorName.equals("")) {
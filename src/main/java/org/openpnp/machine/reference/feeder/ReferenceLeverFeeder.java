@@ -45,6 +45,7 @@ import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.VisionProvider;
 import org.openpnp.util.Utils2D;
+import org.openpnp.util.VirtualClock;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -235,7 +236,7 @@ public class ReferenceLeverFeeder extends ReferenceFeeder {
         // head.moveTo(head.getX(), head.getY(), z, head.getC());
 
         // Settle the camera
-        Thread.sleep(camera.getSettleTimeMs());
+        VirtualClock.sleep(camera.getSettleTimeMs());
 
         VisionProvider visionProvider = camera.getVisionProvider();
 
@@ -237,7 +237,16 @@ public class ReferenceBottomVision implements PartAlignment {
             Nozzle nozzle) throws Exception {
         pipeline.setProperty("camera", camera);
         pipeline.setProperty("nozzle", nozzle);
-        pipeline.process();
+        // Only this run is in production mode, so the pipeline editor still gets every stage's
+        // image from the same pipeline.
+        boolean productionMode = pipeline.isProductionMode();
+        pipeline.setProductionMode(true);
+        try {
+            pipeline.process();
+        }
+        finally {
+            pipeline.setProductionMode(productionMode);
+        }
 
         Result result = pipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME);
 
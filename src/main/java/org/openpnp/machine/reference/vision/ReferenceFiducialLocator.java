@@ -8,13 +8,17 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.Action;
 import javax.swing.Icon;
 
 import org.apache.commons.io.IOUtils;
 import org.opencv.core.KeyPoint;
+import org.opencv.core.Mat;
 import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.support.MessageBoxes;
 import org.openpnp.gui.support.PropertySheetWizardAdapter;
@@ -26,6 +30,7 @@ import org.openpnp.model.Board;
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Footprint;
+import org.openpnp.model.Length;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Panel;
@@ -39,19 +44,19 @@ import org.openpnp.spi.FiducialLocator;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.util.IdentifiableList;
 import org.openpnp.util.MovableUtils;
+import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.QuickHull;
 import org.openpnp.util.TravellingSalesman;
 import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvStage.Result;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementMap;
 import org.simpleframework.xml.Root;
 
-import com.google.common.collect.Sets;
-
 /**
  * Implements an algorithm for finding a set of fiducials on a board and returning the correct
  * orientation for the board.
@@ -69,6 +74,29 @@ public class ReferenceFiducialLocator implements FiducialLocator {
     
     @Attribute(required = false)
     protected int repeatFiducialRecognition = 3;
+
+    /**
+     * When enabled, repeatFiducialRecognition frames are captured as a burst at each camera
+     * position and recognized concurrently, instead of capturing, recognizing and moving once per
+     * repeat.
+     */
+    @Attribute(required = false)
+    protected boolean parallelRecognition = false;
+
+    /**
+     * In parallel recognition, the camera is only moved to the fiducial and another burst taken if
+     * the fiducial was found further than this from the camera, or the frames of a burst disagree
+     * by more than this.
+     */
+    @Element(required = false)
+    protected Length parallelRecognitionTolerance = new Length(0.05, LengthUnit.Millimeters);
+
+    /**
+     * The most bursts taken for one fiducial in parallel recognition.
+     */
+    private static final int MAX_BURSTS = 3;
+
+    private static ExecutorService recognitionExecutor;
     
     public Location locateBoard(BoardLocation boardLocation) throws Exception {
         return locateBoard(boardLocation, false);
@@ -225,18 +253,23 @@ public class ReferenceFiducialLocator implements FiducialLocator {
         }
 
         // Now, for each set of 3 unique points in the list of points, calculate the area of
-        // the triangle. The largest is our answer.
+        // the triangle. The largest is our answer. The hull is returned in order around its
+        // outline, so the points are also kept in that order, which is a reasonable travel
+        // order before the TravellingSalesman gets to them.
         Placement[] bestPoints = null;
         double bestArea = 0;
-        for (Set<Placement> tri : Sets.powerSet(Sets.newHashSet(fiducials))) {
-            if (tri.size() != 3) {
-                continue;
-            }
-            Placement[] triPoints = tri.toArray(new Placement[] {});
-            double a = Utils2D.triangleArea(triPoints[0], triPoints[1], triPoints[2]);
-            if (bestPoints == null || a > bestArea) {
-                bestPoints = triPoints;
-                bestArea = a;
+        int n = fiducials.size();
+        for (int i = 0; i < n - 2; i++) {
+            for (int j = i + 1; j < n - 1; j++) {
+                for (int k = j + 1; k < n; k++) {
+                    double a = Utils2D.triangleArea(fiducials.get(i), fiducials.get(j),
+                            fiducials.get(k));
+                    if (bestPoints == null || a > bestArea) {
+                        bestPoints = new Placement[] {fiducials.get(i), fiducials.get(j),
+                                fiducials.get(k)};
+                        bestArea = a;
+                    }
+                }
             }
         }
 
@@ -320,6 +353,10 @@ public class ReferenceFiducialLocator implements FiducialLocator {
         	repeatFiducialRecognition = this.repeatFiducialRecognition;
         }
 
+        if (parallelRecognition) {
+            return getFiducialLocationParallel(camera, location, part, repeatFiducialRecognition);
+        }
+
         Logger.debug("Looking for {} at {}", part.getId(), location);
         MovableUtils.moveToLocationAtSafeZ(camera, location);
 
@@ -333,12 +370,20 @@ public class ReferenceFiducialLocator implements FiducialLocator {
             pipeline.setProperty("part", part);
             pipeline.setProperty("package", pkg);
             pipeline.setProperty("footprint", footprint);
+            boolean productionMode = pipeline.isProductionMode();
             
             for (int i = 0; i < repeatFiducialRecognition; i++) {
                 List<KeyPoint> keypoints;
                 try {
-                    // Perform vision operation
-                    pipeline.process();
+                    // Perform vision operation. Only this run is in production mode, so the
+                    // pipeline editor still gets every stage's image from the same pipeline.
+                    pipeline.setProductionMode(true);
+                    try {
+                        pipeline.process();
+                    }
+                    finally {
+                        pipeline.setProductionMode(productionMode);
+                    }
                     
                     // Get the results
                     keypoints = (List<KeyPoint>) pipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME).getModel();
@@ -410,6 +455,185 @@ public class ReferenceFiducialLocator implements FiducialLocator {
         return location;
     }
     
+    /**
+     * Locates the fiducial by capturing a burst of frames at the camera position and recognizing
+     * them concurrently, each with its own copy of the pipeline. The matches of a burst are
+     * averaged if averaging is enabled, otherwise the match from the first frame that had one is
+     * used. If the match is further than the tolerance from the camera, or the frames disagree by
+     * more than the tolerance, the camera is centered on the match and another burst is taken,
+     * up to MAX_BURSTS. Otherwise the match is accepted without moving.
+     */
+    private Location getFiducialLocationParallel(Camera camera, Location location, Part part,
+            int frameCount) throws Exception {
+        Logger.debug("Looking for {} at {}", part.getId(), location);
+        MovableUtils.moveToLocationAtSafeZ(camera, location);
+
+        double tolerance = parallelRecognitionTolerance.convertToUnits(LengthUnit.Millimeters)
+                                                       .getValue();
+        PartSettings partSettings = getPartSettings(part);
+        List<CvPipeline> pipelines = new ArrayList<>();
+        List<Mat> frames = new ArrayList<>();
+        try {
+            for (int i = 0; i < frameCount; i++) {
+                CvPipeline pipeline = partSettings.getPipeline().clone();
+                pipeline.setProperty("camera", camera);
+                pipeline.setProperty("part", part);
+                pipeline.setProperty("package", part.getPackage());
+                pipeline.setProperty("footprint", part.getPackage().getFootprint());
+                pipeline.setProductionMode(true);
+                pipelines.add(pipeline);
+            }
+
+            for (int burst = 0; burst < MAX_BURSTS; burst++) {
+                Location cameraLocation = camera.getLocation();
+                for (Mat frame : frames) {
+                    frame.release();
+                }
+                frames.clear();
+                frames.add(camera.settleAndCaptureMat());
+                for (int i = 1; i < frameCount; i++) {
+                    frames.add(camera.captureMat());
+                }
+
+                List<Future<Location>> futures = new ArrayList<>();
+                for (int i = 0; i < frameCount; i++) {
+                    CvPipeline pipeline = pipelines.get(i);
+                    Mat frame = frames.get(i);
+                    futures.add(getRecognitionExecutor()
+                            .submit(() -> locateInFrame(pipeline, frame, camera, cameraLocation)));
+                }
+                List<Location> matchedLocations = new ArrayList<>();
+                for (Future<Location> future : futures) {
+                    Location matchedLocation;
+                    try {
+                        matchedLocation = future.get();
+                    }
+                    catch (ExecutionException e) {
+                        if (e.getCause() instanceof Exception) {
+                            throw (Exception) e.getCause();
+                        }
+                        throw e;
+                    }
+                    if (matchedLocation != null) {
+                        matchedLocations.add(matchedLocation);
+                    }
+                }
+                if (matchedLocations.isEmpty()) {
+                    Logger.debug("No matches found!");
+                    return null;
+                }
+
+                location = matchedLocations.get(0);
+                if (this.enabledAveraging && matchedLocations.size() >= 2) {
+                    double sumX = 0;
+                    double sumY = 0;
+                    for (Location matchedLocation : matchedLocations) {
+                        matchedLocation = matchedLocation.convertToUnits(location.getUnits());
+                        sumX += matchedLocation.getX();
+                        sumY += matchedLocation.getY();
+                    }
+                    location = location.derive(sumX / matchedLocations.size(),
+                            sumY / matchedLocations.size(), null, null);
+                }
+
+                showResult(camera, pipelines.get(0));
+
+                Location locationMm = location.convertToUnits(LengthUnit.Millimeters);
+                double spread = 0;
+                for (Location matchedLocation : matchedLocations) {
+                    spread = Math.max(spread, locationMm.getLinearDistanceTo(matchedLocation));
+                }
+                double offset = locationMm.getLinearDistanceTo(cameraLocation);
+                Logger.debug("{} located at {} from {} of {} frames, offset {} mm, spread {} mm",
+                        part.getId(), location, matchedLocations.size(), frameCount, offset,
+                        spread);
+                if (offset <= tolerance && spread <= tolerance) {
+                    break;
+                }
+                if (burst == MAX_BURSTS - 1) {
+                    Logger.debug("{} still out of tolerance after {} bursts", part.getId(),
+                            MAX_BURSTS);
+                    break;
+                }
+                camera.moveTo(location);
+            }
+            return location;
+        }
+        finally {
+            for (Mat frame : frames) {
+                frame.release();
+            }
+            for (CvPipeline pipeline : pipelines) {
+                pipeline.close();
+            }
+        }
+    }
+
+    /**
+     * Shows the working image of the pipeline in the camera view, as the pipeline would when
+     * capturing its own image. Does nothing when not running in the UI.
+     */
+    private static void showResult(Camera camera, CvPipeline pipeline) {
+        try {
+            MainFrame.get().getCameraViews().getCameraView(camera)
+                    .showFilteredImage(OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()), 250);
+        }
+        catch (Exception e) {
+            // if we aren't running in the UI this will fail, and that's okay
+        }
+    }
+
+    /**
+     * Runs the pipeline on the frame and returns the match closest to the center of the frame,
+     * or null if there was none.
+     */
+    /**
+     * Runs the pipeline on the frame and returns the match closest to the camera, or null if
+     * there is none. Throws if the pipeline fails, rather than reporting no match.
+     */
+    private static Location locateInFrame(CvPipeline pipeline, Mat frame, Camera camera,
+            Location cameraLocation) throws Exception {
+        pipeline.setProperty("frame", frame);
+        pipeline.process();
+        Result result = pipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME);
+        if (result == null) {
+            throw new Exception(String.format(
+                    "ReferenceFiducialLocator: Pipeline error. Pipeline must contain a result named '%s'.",
+                    VisionUtils.PIPELINE_RESULTS_NAME));
+        }
+        if (result.model instanceof Exception) {
+            throw (Exception) result.model;
+        }
+        List<KeyPoint> keypoints = (List<KeyPoint>) result.model;
+        if (keypoints == null || keypoints.isEmpty()) {
+            return null;
+        }
+        Location best = null;
+        double bestDistance = Double.MAX_VALUE;
+        for (KeyPoint keypoint : keypoints) {
+            Location location = cameraLocation.add(
+                    VisionUtils.getPixelCenterOffsets(camera, keypoint.pt.x, keypoint.pt.y));
+            double distance = location.getLinearDistanceTo(cameraLocation);
+            if (distance < bestDistance) {
+                best = location;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private static synchronized ExecutorService getRecognitionExecutor() {
+        if (recognitionExecutor == null) {
+            recognitionExecutor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), r -> {
+                        Thread thread = new Thread(r, "ReferenceFiducialLocator Recognition");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return recognitionExecutor;
+    }
+
     private static IdentifiableList<Placement> getFiducials(BoardLocation boardLocation) {
         Board board = boardLocation.getBoard();
         IdentifiableList<Placement> fiducials = new IdentifiableList<>();
@@ -439,6 +663,22 @@ public class ReferenceFiducialLocator implements FiducialLocator {
         this.repeatFiducialRecognition = repeatFiducialRecognition;
     }
     
+    public boolean isParallelRecognition() {
+        return parallelRecognition;
+    }
+
+    public void setParallelRecognition(boolean parallelRecognition) {
+        this.parallelRecognition = parallelRecognition;
+    }
+
+    public Length getParallelRecognitionTolerance() {
+        return parallelRecognitionTolerance;
+    }
+
+    public void setParallelRecognitionTolerance(Length parallelRecognitionTolerance) {
+        this.parallelRecognitionTolerance = parallelRecognitionTolerance;
+    }
+
     public CvPipeline getPipeline() {
         return pipeline;
     }
@@ -17,6 +17,7 @@ import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.gui.support.IntegerConverter;
+import org.openpnp.gui.support.LengthConverter;
 import org.openpnp.gui.support.MessageBoxes;
 import org.openpnp.machine.reference.vision.ReferenceFiducialLocator;
 import org.openpnp.machine.reference.vision.ReferenceFiducialLocator.PartSettings;
@@ -43,6 +44,8 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
     
     JCheckBox enabledAveragingCheckbox; 
     JTextField textFieldRepeatFiducialRecognition;
+    JCheckBox parallelRecognitionCheckbox;
+    JTextField textFieldParallelRecognitionTolerance;
 
     public ReferenceFiducialLocatorConfigurationWizard(ReferenceFiducialLocator fiducialLocator) {
         this.fiducialLocator = fiducialLocator;
@@ -61,6 +64,10 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
@@ -128,6 +135,21 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
         enabledAveragingCheckbox = new JCheckBox("");
         panel.add(enabledAveragingCheckbox, "4, 6");
 
+        JLabel lblParallelRecognition = new JLabel("Parallel Recognition?");
+        lblParallelRecognition.setToolTipText("Captures the repeated recognition frames as a burst and recognizes them at the same time. The camera is only moved closer when the result is out of tolerance.");
+        panel.add(lblParallelRecognition, "2, 8");
+
+        parallelRecognitionCheckbox = new JCheckBox("");
+        panel.add(parallelRecognitionCheckbox, "4, 8");
+
+        JLabel lblParallelRecognitionTolerance = new JLabel("Parallel Tolerance");
+        lblParallelRecognitionTolerance.setToolTipText("Largest offset from the camera center, and largest disagreement between frames, that is accepted without moving the camera and taking another burst.");
+        panel.add(lblParallelRecognitionTolerance, "2, 10");
+
+        textFieldParallelRecognitionTolerance = new JTextField();
+        panel.add(textFieldParallelRecognitionTolerance, "4, 10");
+        textFieldParallelRecognitionTolerance.setColumns(6);
+
     }
     
     private void editPipeline() throws Exception {
@@ -162,11 +184,16 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
     @Override
     public void createBindings() {
     	IntegerConverter intConverter = new IntegerConverter();
+    	LengthConverter lengthConverter = new LengthConverter();
     	
     	addWrappedBinding(fiducialLocator, "enabledAveraging", enabledAveragingCheckbox, "selected");
     	addWrappedBinding(fiducialLocator, "repeatFiducialRecognition", textFieldRepeatFiducialRecognition, "text", intConverter);
     	
+    	addWrappedBinding(fiducialLocator, "parallelRecognition", parallelRecognitionCheckbox, "selected");
+    	addWrappedBinding(fiducialLocator, "parallelRecognitionTolerance", textFieldParallelRecognitionTolerance, "text", lengthConverter);
+    	
     	ComponentDecorators.decorateWithAutoSelect(textFieldRepeatFiducialRecognition);
+    	ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldParallelRecognitionTolerance);
     }
     
     @Override
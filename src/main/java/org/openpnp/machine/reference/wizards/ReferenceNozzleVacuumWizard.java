@@ -21,10 +21,13 @@ package org.openpnp.machine.reference.wizards;
 
 import java.awt.BorderLayout;
 
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
 
+import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.gui.support.ActuatorsComboBoxModel;
 import org.openpnp.gui.support.IntegerConverter;
@@ -44,6 +47,8 @@ public class ReferenceNozzleVacuumWizard extends AbstractConfigurationWizard {
     private JPanel panel;
     private JComboBox vacuumComboBoxActuator;
     private JComboBox blowOffComboBoxActuator;
+    private JCheckBox adaptiveDwellCheckBox;
+    private JTextField adaptiveDwellPollTf;
 
     public ReferenceNozzleVacuumWizard(ReferenceNozzle nozzle) {
         this.nozzle = nozzle;
@@ -62,6 +67,8 @@ public class ReferenceNozzleVacuumWizard extends AbstractConfigurationWizard {
             new RowSpec[] {
                 FormSpecs.RELATED_GAP_ROWSPEC, 
                 FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,}));
         
         label = new JLabel("Vacuum Actuator");
@@ -75,6 +82,19 @@ public class ReferenceNozzleVacuumWizard extends AbstractConfigurationWizard {
         blowOffComboBoxActuator = new JComboBox();
         blowOffComboBoxActuator.setModel(new ActuatorsComboBoxModel(nozzle.getHead()));
         panel.add(blowOffComboBoxActuator, "2, 3");
+
+        label = new JLabel("Adaptive Dwell");
+        label.setToolTipText("<html>End the pick and place dwell as soon as the vacuum level shows that the part<br/>"
+                + "is gripped or released. The dwell times are then used as timeouts only.</html>");
+        panel.add(label, "1, 4, right, center");
+        adaptiveDwellCheckBox = new JCheckBox("");
+        panel.add(adaptiveDwellCheckBox, "2, 4");
+
+        label = new JLabel("Vacuum Poll Interval (ms)");
+        panel.add(label, "1, 5, right, center");
+        adaptiveDwellPollTf = new JTextField();
+        adaptiveDwellPollTf.setColumns(10);
+        panel.add(adaptiveDwellPollTf, "2, 5, left, default");
     }
 
     @Override
@@ -84,5 +104,10 @@ public class ReferenceNozzleVacuumWizard extends AbstractConfigurationWizard {
 
         addWrappedBinding(nozzle, "vacuumActuatorName", vacuumComboBoxActuator, "selectedItem");
         addWrappedBinding(nozzle, "blowOffActuatorName", blowOffComboBoxActuator, "selectedItem");
+        addWrappedBinding(nozzle, "adaptiveDwell", adaptiveDwellCheckBox, "selected");
+        addWrappedBinding(nozzle, "adaptiveDwellPollMilliseconds", adaptiveDwellPollTf, "text",
+                intConverter);
+
+        ComponentDecorators.decorateWithAutoSelect(adaptiveDwellPollTf);
     }
 }
@@ -20,6 +20,7 @@
 package org.openpnp.machine.reference.wizards;
 
 import javax.swing.BoxLayout;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -32,6 +33,7 @@ import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.gui.support.IntegerConverter;
 import org.openpnp.machine.reference.ReferencePnpJobProcessor;
 import org.openpnp.machine.reference.ReferencePnpJobProcessor.JobOrderHint;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.PlannerType;
 
 import com.jgoodies.forms.layout.ColumnSpec;
 import com.jgoodies.forms.layout.FormLayout;
@@ -42,7 +44,12 @@ import com.jgoodies.forms.layout.RowSpec;
 public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigurationWizard {
     private final ReferencePnpJobProcessor jobProcessor;
     private JComboBox comboBoxJobOrder;
+    private JComboBox comboBoxPlanner;
     private JTextField maxVisionRetriesTextField;
+    private JCheckBox chckbxOverlappedExecution;
+    private JCheckBox chckbxFeedAhead;
+    private JCheckBox chckbxRoundRobinFeeders;
+    private JCheckBox chckbxWriteMetrics;
 
     public ReferencePnpJobProcessorConfigurationWizard(ReferencePnpJobProcessor jobProcessor) {
         this.jobProcessor = jobProcessor;
@@ -60,6 +67,11 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
             new RowSpec[] {
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,}));
 
         JLabel lblJobOrder = new JLabel(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.JobOrder"));
@@ -74,6 +86,36 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
         maxVisionRetriesTextField = new JTextField();
         panelGeneral.add(maxVisionRetriesTextField, "4, 3");
         maxVisionRetriesTextField.setColumns(10);
+
+        JLabel lblOverlappedExecution = new JLabel(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.OverlappedExecution"));
+        panelGeneral.add(lblOverlappedExecution, "2, 4, right, default");
+
+        chckbxOverlappedExecution = new JCheckBox("");
+        panelGeneral.add(chckbxOverlappedExecution, "4, 4");
+
+        JLabel lblFeedAhead = new JLabel(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.FeedAhead"));
+        panelGeneral.add(lblFeedAhead, "2, 5, right, default");
+
+        chckbxFeedAhead = new JCheckBox("");
+        panelGeneral.add(chckbxFeedAhead, "4, 5");
+
+        JLabel lblRoundRobinFeeders = new JLabel(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.RoundRobinFeeders"));
+        panelGeneral.add(lblRoundRobinFeeders, "2, 6, right, default");
+
+        chckbxRoundRobinFeeders = new JCheckBox("");
+        panelGeneral.add(chckbxRoundRobinFeeders, "4, 6");
+
+        JLabel lblWriteMetrics = new JLabel(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.WriteMetrics"));
+        panelGeneral.add(lblWriteMetrics, "2, 7, right, default");
+
+        chckbxWriteMetrics = new JCheckBox("");
+        panelGeneral.add(chckbxWriteMetrics, "4, 7");
+
+        JLabel lblPlanner = new JLabel(Translations.getString("MachineSetup.JobProcessors.ReferencePnpJobProcessor.Label.Planner"));
+        panelGeneral.add(lblPlanner, "2, 8, right, default");
+
+        comboBoxPlanner = new JComboBox(PlannerType.values());
+        panelGeneral.add(comboBoxPlanner, "4, 8");
     }
 
     @Override
@@ -82,6 +124,11 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
 
         addWrappedBinding(jobProcessor, "jobOrder", comboBoxJobOrder, "selectedItem");
         addWrappedBinding(jobProcessor, "maxVisionRetries", maxVisionRetriesTextField, "text", intConverter);
+        addWrappedBinding(jobProcessor, "overlappedExecution", chckbxOverlappedExecution, "selected");
+        addWrappedBinding(jobProcessor, "feedAhead", chckbxFeedAhead, "selected");
+        addWrappedBinding(jobProcessor, "roundRobinFeeders", chckbxRoundRobinFeeders, "selected");
+        addWrappedBinding(jobProcessor, "writeMetrics", chckbxWriteMetrics, "selected");
+        addWrappedBinding(jobProcessor, "plannerType", comboBoxPlanner, "selectedItem");
 
         ComponentDecorators.decorateWithAutoSelect(maxVisionRetriesTextField);
     }
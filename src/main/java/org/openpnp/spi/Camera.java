@@ -22,8 +22,10 @@ package org.openpnp.spi;
 import java.awt.image.BufferedImage;
 import java.io.Closeable;
 
+import org.opencv.core.Mat;
 import org.openpnp.CameraListener;
 import org.openpnp.model.Location;
+import org.openpnp.util.OpenCvUtils;
 
 /**
  * Represents a Camera attached to the system and allows a caller to retrieve images from it.
@@ -83,6 +85,26 @@ public interface Camera extends HeadMountable, WizardConfigurable,
      * @return
      */
     public BufferedImage settleAndCapture();
+    
+    /**
+     * Same as capture(), but returns the image as a Mat so that vision operations don't have to
+     * convert it from a BufferedImage. The caller is responsible for releasing the Mat.
+     * 
+     * @return
+     */
+    public default Mat captureMat() {
+        return OpenCvUtils.toMat(capture());
+    }
+    
+    /**
+     * Same as settleAndCapture(), but returns the image as a Mat. The caller is responsible for
+     * releasing the Mat.
+     * 
+     * @return
+     */
+    public default Mat settleAndCaptureMat() {
+        return OpenCvUtils.toMat(settleAndCapture());
+    }
 
     /**
      * Registers a listener to receive continuous images from the camera.
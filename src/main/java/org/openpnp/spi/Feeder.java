@@ -92,6 +92,30 @@ public interface Feeder extends Identifiable, Named, WizardConfigurable, Propert
 
     public void postPick(Nozzle nozzle) throws Exception;
     
+    /**
+     * Return true if feed() may be called ahead of time, while the head is busy with other work,
+     * instead of just before the part is picked. A Feeder that returns true must not move the
+     * head during feed() and must keep the fed part available to be picked until the next
+     * feed().
+     * 
+     * @return
+     */
+    public default boolean isPrefeedCapable() {
+        return false;
+    }
+    
+    /**
+     * Feeds ahead of time, as with feed(). This is only called if isPrefeedCapable() returns
+     * true, and it may be called while the head is still moving, so a Feeder that can should
+     * send its feed without waiting for the head to stop. The default calls feed().
+     * 
+     * @param nozzle
+     * @throws Exception
+     */
+    public default void prefeed(Nozzle nozzle) throws Exception {
+        feed(nozzle);
+    }
+    
     public int getFeedRetryCount();
     
     public int getPickRetryCount();
@@ -1,5 +1,7 @@
 package org.openpnp.spi;
 
+import java.util.List;
+
 import org.openpnp.model.Location;
 
 public interface Movable extends Locatable {
@@ -17,6 +19,24 @@ public interface Movable extends Locatable {
 
     public void moveTo(Location location) throws Exception;
 
+    /**
+     * Move the object through each of the Locations in turn, as one continuous motion where the
+     * implementation supports it. Unlike a series of moveTo() calls the object is not required to
+     * come to a stop at the intermediate Locations, so the motion controller may blend the moves.
+     * Double.NaN in a Location means the axis keeps the value of the previous Location.
+     * 
+     * The default implementation simply calls moveTo() for each Location.
+     * 
+     * @param locations The Locations to move through, in order.
+     * @param speed See moveTo(Location, double).
+     * @throws Exception
+     */
+    public default void moveToSequence(List<Location> locations, double speed) throws Exception {
+        for (Location location : locations) {
+            moveTo(location, speed);
+        }
+    }
+
     public void moveToSafeZ(double speed) throws Exception;
 
     public void moveToSafeZ() throws Exception;
@@ -26,4 +26,14 @@ public interface PnpJobPlanner {
 
     
     public List<PlannedPlacement> plan(Head head, List<JobPlacement> placements);
+
+    /**
+     * Called by the job processor when a plan returned by plan() is used for a cycle. A plan may
+     * be made ahead of time and then discarded, so a planner that keeps state from one cycle to
+     * the next should only update it here. The default does nothing.
+     * 
+     * @param plannedPlacements
+     */
+    public default void planUsed(List<PlannedPlacement> plannedPlacements) {
+    }
 }
@@ -1,8 +1,10 @@
 package org.openpnp.spi.base;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -26,6 +28,7 @@ import org.openpnp.spi.Head;
 import org.openpnp.spi.HeadMountable;
 import org.openpnp.spi.VisionProvider;
 import org.openpnp.util.OpenCvUtils;
+import org.openpnp.util.VirtualClock;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -49,6 +52,34 @@ public abstract class AbstractCamera extends AbstractModelObject implements Came
     @Attribute(required = false)
     protected long settleTimeMs = 250;
 
+    /**
+     * When enabled and the camera is capturing continuously, settleAndCapture() returns the first
+     * preview frame that was exposed after it was called, instead of waiting for the settle time
+     * and capturing a new image. The capture scripting events are fired around the wait.
+     */
+    @Attribute(required = false)
+    protected boolean motionAwareCapture = false;
+
+    /**
+     * Number of frames received after motion completes that are discarded by motion aware
+     * capture, because the driver or capture device may still have been holding them when the
+     * motion completed. OpenCV and V4L capture typically buffer a few frames.
+     */
+    @Attribute(required = false)
+    protected int motionAwareSkipFrames = 2;
+
+    /**
+     * Number of recent continuous capture frames kept for captureAfter().
+     */
+    private static final int FRAME_BUFFER_SIZE = 4;
+
+    /**
+     * How long motion aware capture waits for a frame before falling back to settling.
+     */
+    private static final long MOTION_AWARE_TIMEOUT_MS = 1000;
+
+    private final Deque<Frame> frameBuffer = new ArrayDeque<>();
+
     protected Set<ListenerEntry> listeners = Collections.synchronizedSet(new HashSet<>());
 
     protected Head head;
@@ -160,19 +191,25 @@ public abstract class AbstractCamera extends AbstractModelObject implements Came
         return visionProvider;
     }
     
-    private BufferedImage autoSettleAndCapture() {
+    private Mat autoSettleAndCaptureMat() {
         long t = System.currentTimeMillis();
         while (true) {
-            // Capture an image, convert to Mat and convert to gray.
-            BufferedImage image = capture();
-            Mat mat = OpenCvUtils.toMat(image);
-            Imgproc.cvtColor(mat, mat, Imgproc.COLOR_BGR2GRAY);
+            // Capture an image and convert a copy to gray.
+            Mat image = captureMat();
+            Mat mat = new Mat();
+            if (image.channels() == 1) {
+                image.copyTo(mat);
+            }
+            else {
+                Imgproc.cvtColor(image, mat, Imgproc.COLOR_BGR2GRAY);
+            }
             
             // If this is the first time through the loop then assign the new image to
             // the lastSettleMat and loop again. We need at least two images to check.
             // to lastSettleMat and 
             if (lastSettleMat == null) {
                 lastSettleMat = mat;
+                image.release();
                 continue;
             }
             
@@ -197,35 +234,129 @@ public abstract class AbstractCamera extends AbstractModelObject implements Came
                 Logger.debug("autoSettleAndCapture in {} ms", System.currentTimeMillis() - t);
                 return image;
             }
+            image.release();
         }
     }
 
-    public BufferedImage settleAndCapture() {
+    /**
+     * Fires the given camera scripting event, such as Camera.BeforeCapture, with this camera in
+     * the globals.
+     */
+    protected void fireCameraEvent(String event) {
         try {
             Map<String, Object> globals = new HashMap<>();
             globals.put("camera", this);
-            Configuration.get().getScripting().on("Camera.BeforeSettle", globals);
+            Configuration.get().getScripting().on(event, globals);
         }
         catch (Exception e) {
             Logger.warn(e);
         }
-        
-    	
+    }
+
+    /**
+     * If motion aware capture is enabled and the camera is capturing continuously, returns the
+     * first frame exposed after now. The Camera.BeforeCapture and Camera.AfterCapture scripting
+     * events are fired around the wait, so that scripts that switch lights on and off see the
+     * same sequence as with a regular capture. Returns null if motion aware capture can't be
+     * used, in which case the caller should settle and capture as usual.
+     */
+    private BufferedImage captureMotionAware() {
+        if (!motionAwareCapture || listeners.isEmpty()) {
+            return null;
+        }
+        fireCameraEvent("Camera.BeforeCapture");
+        BufferedImage image = captureAfter(System.currentTimeMillis(), MOTION_AWARE_TIMEOUT_MS);
+        fireCameraEvent("Camera.AfterCapture");
+        if (image == null) {
+            Logger.debug("{} got no frame for motion aware capture, settling instead.", getName());
+        }
+        return image;
+    }
+
+    /**
+     * If a fixed settle time is set, waits for it. Returns false if the settle time is negative,
+     * meaning that auto settle should be used instead.
+     */
+    private boolean settle() {
         if (getSettleTimeMs() >= 0) {
             try {
-                Thread.sleep(getSettleTimeMs());
+                VirtualClock.sleep(getSettleTimeMs());
             }
             catch (Exception e) {
 
             }
+            return true;
+        }
+        return false;
+    }
+
+    public BufferedImage settleAndCapture() {
+        fireCameraEvent("Camera.BeforeSettle");
+        BufferedImage image = captureMotionAware();
+        if (image != null) {
+            return image;
+        }
+        if (settle()) {
             return capture();
         }
-        else {
-            return autoSettleAndCapture();
+        Mat mat = autoSettleAndCaptureMat();
+        image = OpenCvUtils.toBufferedImage(mat);
+        mat.release();
+        return image;
+    }
+
+    public Mat settleAndCaptureMat() {
+        fireCameraEvent("Camera.BeforeSettle");
+        BufferedImage image = captureMotionAware();
+        if (image != null) {
+            return OpenCvUtils.toMat(image);
+        }
+        if (settle()) {
+            return captureMat();
+        }
+        return autoSettleAndCaptureMat();
+    }
+
+    /**
+     * Returns the first continuous capture frame that was exposed entirely after timeMs, waiting
+     * up to timeoutMs for one to arrive. The first motionAwareSkipFrames frames received after
+     * timeMs are taken to have been exposed, at least partly, before it and are skipped. Returns
+     * null if no such frame arrives in time, which is always the case when the camera is not
+     * capturing continuously.
+     */
+    public BufferedImage captureAfter(long timeMs, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (frameBuffer) {
+            while (true) {
+                int framesAfter = 0;
+                for (Frame frame : frameBuffer) {
+                    if (frame.timeMs >= timeMs && framesAfter++ >= motionAwareSkipFrames) {
+                        return frame.image;
+                    }
+                }
+                long remainingMs = deadline - System.currentTimeMillis();
+                if (remainingMs <= 0) {
+                    return null;
+                }
+                try {
+                    frameBuffer.wait(remainingMs);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
         }
     }
 
     protected void broadcastCapture(BufferedImage img) {
+        synchronized (frameBuffer) {
+            while (frameBuffer.size() >= Math.max(FRAME_BUFFER_SIZE, motionAwareSkipFrames + 1)) {
+                frameBuffer.removeFirst();
+            }
+            frameBuffer.addLast(new Frame(img, System.currentTimeMillis()));
+            frameBuffer.notifyAll();
+        }
         for (ListenerEntry listener : new ArrayList<>(listeners)) {
             listener.listener.frameReceived(img);
         }
@@ -239,6 +370,22 @@ public abstract class AbstractCamera extends AbstractModelObject implements Came
         this.settleTimeMs = settleTimeMs;
     }
 
+    public boolean isMotionAwareCapture() {
+        return motionAwareCapture;
+    }
+
+    public void setMotionAwareCapture(boolean motionAwareCapture) {
+        this.motionAwareCapture = motionAwareCapture;
+    }
+
+    public int getMotionAwareSkipFrames() {
+        return motionAwareSkipFrames;
+    }
+
+    public void setMotionAwareSkipFrames(int motionAwareSkipFrames) {
+        this.motionAwareSkipFrames = Math.max(0, motionAwareSkipFrames);
+    }
+
     @Override
     public Icon getPropertySheetHolderIcon() {
         return Icons.captureCamera;
@@ -259,6 +406,19 @@ public abstract class AbstractCamera extends AbstractModelObject implements Came
         return getName();
     }
     
+    /**
+     * A continuous capture frame and the time it was received.
+     */
+    protected static class Frame {
+        final BufferedImage image;
+        final long timeMs;
+
+        Frame(BufferedImage image, long timeMs) {
+            this.image = image;
+            this.timeMs = timeMs;
+        }
+    }
+
     protected class ListenerEntry {
         public CameraListener listener;
         public long lastFrameSent;
@@ -105,12 +105,7 @@ public abstract class AbstractHead extends AbstractModelObject implements Head {
         if (name == null || name.isEmpty()) {
             return null;
         }
-        for (Actuator actuator : actuators) {
-            if (actuator.getName().equals(name)) {
-                return actuator;
-            }
-        }
-        return null;
+        return actuators.getByName(name);
     }
 
     @Override
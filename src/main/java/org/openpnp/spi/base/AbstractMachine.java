@@ -164,22 +164,12 @@ public abstract class AbstractMachine extends AbstractModelObject implements Mac
         if (name == null || name.isEmpty()) {
             return null;
         }
-        for (Actuator actuator : actuators) {
-            if (actuator.getName().equals(name)) {
-                return actuator;
-            }
-        }
-        return null;
+        return actuators.getByName(name);
     }
 
     @Override
     public Feeder getFeederByName(String name) {
-        for (Feeder feeder : feeders) {
-            if (feeder.getName().equals(name)) {
-                return feeder;
-            }
-        }
-        return null;
+        return feeders.getByName(name);
     }
 
     @Override
@@ -1,8 +1,13 @@
 package org.openpnp.spi.base;
 
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.openpnp.model.AbstractModelObject;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Part;
 import org.openpnp.spi.Feeder;
@@ -80,6 +85,139 @@ public abstract class AbstractPnpJobProcessor extends AbstractJobProcessor
         throw new JobProcessorException(part, "No compatible, enabled feeder found for part " + part.getId());
     }
 
+    /**
+     * An index of the enabled Feeders serving each Part, built from the Machine's Feeders. Each
+     * Part has a current Feeder, which is what find() returns. With round robin enabled, advance()
+     * moves the Part on to its next Feeder so that parts are taken from all of them in turn.
+     * 
+     * The index listens for Feeders being added to or removed from the Machine, and for the
+     * enabled state or Part of a Feeder changing, and is rebuilt on the next lookup after any of
+     * them. Some Feeders, such as the slot feeders, can change their Part without an event, so
+     * find() also checks the one Feeder it returns. dispose() must be called once the index is no
+     * longer used, to remove the listeners.
+     */
+    public static class FeedersByPart {
+        private final Machine machine;
+        private Map<Part, List<Feeder>> feeders = new IdentityHashMap<>();
+        private Map<Part, Integer> current = new IdentityHashMap<>();
+        private List<AbstractModelObject> listenedTo = new ArrayList<>();
+        private boolean valid;
+
+        private final PropertyChangeListener machineListener = e -> {
+            if ("feeders".equals(e.getPropertyName())) {
+                invalidate();
+            }
+        };
+
+        private final PropertyChangeListener feederListener = e -> {
+            if ("enabled".equals(e.getPropertyName()) || "part".equals(e.getPropertyName())) {
+                invalidate();
+            }
+        };
+
+        public FeedersByPart(Machine machine) {
+            this.machine = machine;
+            if (machine instanceof AbstractModelObject) {
+                ((AbstractModelObject) machine).addPropertyChangeListener(machineListener);
+            }
+            rebuild();
+        }
+
+        /**
+         * Marks the index out of date, so that it is rebuilt on the next lookup.
+         */
+        public synchronized void invalidate() {
+            valid = false;
+        }
+
+        public synchronized void rebuild() {
+            removeFeederListeners();
+            feeders.clear();
+            for (Feeder feeder : machine.getFeeders()) {
+                if (feeder instanceof AbstractModelObject) {
+                    ((AbstractModelObject) feeder).addPropertyChangeListener(feederListener);
+                    listenedTo.add((AbstractModelObject) feeder);
+                }
+                if (feeder.isEnabled() && feeder.getPart() != null) {
+                    feeders.computeIfAbsent(feeder.getPart(), part -> new ArrayList<>()).add(feeder);
+                }
+            }
+            valid = true;
+        }
+
+        /**
+         * Removes the listeners from the Machine and its Feeders.
+         */
+        public synchronized void dispose() {
+            if (machine instanceof AbstractModelObject) {
+                ((AbstractModelObject) machine).removePropertyChangeListener(machineListener);
+            }
+            removeFeederListeners();
+            valid = false;
+        }
+
+        private void removeFeederListeners() {
+            for (AbstractModelObject feeder : listenedTo) {
+                feeder.removePropertyChangeListener(feederListener);
+            }
+            listenedTo.clear();
+        }
+
+        /**
+         * Returns all the enabled Feeders serving the Part, in Machine order.
+         */
+        public synchronized List<Feeder> getFeeders(Part part) {
+            if (!valid) {
+                rebuild();
+            }
+            List<Feeder> list = feeders.get(part);
+            return list == null ? new ArrayList<>() : new ArrayList<>(list);
+        }
+
+        /**
+         * Returns the current Feeder for the Part.
+         * 
+         * @throws JobProcessorException If no Feeder is found that is both enabled and is serving
+         *         the Part.
+         */
+        public synchronized Feeder find(Part part) throws JobProcessorException {
+            if (!valid) {
+                rebuild();
+            }
+            Feeder feeder = current(part);
+            if (feeder != null && (feeder.getPart() != part || !feeder.isEnabled())) {
+                rebuild();
+                feeder = current(part);
+            }
+            if (feeder == null) {
+                throw new JobProcessorException(part,
+                        "No compatible, enabled feeder found for part " + part.getId());
+            }
+            return feeder;
+        }
+
+        private Feeder current(Part part) {
+            List<Feeder> list = feeders.get(part);
+            if (list == null) {
+                return null;
+            }
+            Integer index = current.get(part);
+            return list.get(index == null ? 0 : index % list.size());
+        }
+
+        /**
+         * Makes the next Feeder serving the Part the current one.
+         */
+        public synchronized void advance(Part part) {
+            List<Feeder> list = feeders.get(part);
+            if (list == null || list.size() < 2) {
+                return;
+            }
+            Integer index = current.get(part);
+            current.put(part, ((index == null ? 0 : index) + 1) % list.size());
+        }
+    }
+
 
     public static PartAlignment findPartAligner(Machine machine, Part part) {
         for (PartAlignment partAlignment : machine.getPartAlignments()) {
@@ -0,0 +1,142 @@
+package org.openpnp.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations in nanoseconds. Values are counted in logarithmic buckets,
+ * eight per power of two, so percentiles are accurate to within about 6% while recording costs
+ * only a few atomic increments.
+ */
+public class Histogram implements HistogramMXBean {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong minNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long min;
+        while (nanos < (min = minNanos.get()) && !minNanos.compareAndSet(min, nanos)) {
+        }
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        minNanos.set(Long.MAX_VALUE);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public double getTotalMilliseconds() {
+        return totalNanos.get() / 1e6;
+    }
+
+    @Override
+    public double getMeanMilliseconds() {
+        long count = this.count.get();
+        return count == 0 ? 0 : totalNanos.get() / 1e6 / count;
+    }
+
+    @Override
+    public double getMinMilliseconds() {
+        long min = minNanos.get();
+        return min == Long.MAX_VALUE ? 0 : min / 1e6;
+    }
+
+    @Override
+    public double getMaxMilliseconds() {
+        return maxNanos.get() / 1e6;
+    }
+
+    @Override
+    public double get50thPercentileMilliseconds() {
+        return getPercentileMilliseconds(50);
+    }
+
+    @Override
+    public double get90thPercentileMilliseconds() {
+        return getPercentileMilliseconds(90);
+    }
+
+    @Override
+    public double get99thPercentileMilliseconds() {
+        return getPercentileMilliseconds(99);
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall, estimated
+     * as the middle of the bucket it falls in and limited to the recorded minimum and maximum.
+     */
+    public double getPercentileMilliseconds(double percentile) {
+        long count = this.count.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                long low = bucketLowerBound(i);
+                long high = bucketLowerBound(i + 1) - 1;
+                long nanos = low + (high - low) / 2;
+                nanos = Math.max(nanos, minNanos.get());
+                nanos = Math.min(nanos, maxNanos.get());
+                return nanos / 1e6;
+            }
+        }
+        return getMaxMilliseconds();
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketLowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket >= BUCKETS) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count %d, total %.1f ms, mean %.1f ms, p50 %.1f ms, p90 %.1f ms, "
+                + "p99 %.1f ms, max %.1f ms", getCount(), getTotalMilliseconds(),
+                getMeanMilliseconds(), get50thPercentileMilliseconds(),
+                get90thPercentileMilliseconds(), get99thPercentileMilliseconds(),
+                getMaxMilliseconds());
+    }
+}
@@ -0,0 +1,24 @@
+package org.openpnp.util;
+
+/**
+ * The attributes a Histogram exposes over JMX, all in milliseconds except the count.
+ */
+public interface HistogramMXBean {
+    long getCount();
+
+    double getTotalMilliseconds();
+
+    double getMeanMilliseconds();
+
+    double getMinMilliseconds();
+
+    double getMaxMilliseconds();
+
+    double get50thPercentileMilliseconds();
+
+    double get90thPercentileMilliseconds();
+
+    double get99thPercentileMilliseconds();
+
+    void reset();
+}
@@ -1,22 +1,43 @@
 package org.openpnp.util;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.openpnp.model.Identifiable;
+import org.openpnp.model.Named;
 
 /**
  * A List specifically for storing implementations of Identifiable. This class adds a get(String)
- * method for getting the Identifiable object with the specified id from the list. Currently
- * performs a simple search through the list but is intended to be indexed eventually.
- * 
- * TODO: Perform indexing on insert and remove so that get(String) can perform better. Consider what
- * happens if an id changes out from under us.
- * 
+ * method for getting the Identifiable object with the specified id from the list, and a
+ * getByName(String) method for elements that are also Named.
+ *
+ * Both lookups are served from hash indexes that are rebuilt whenever the list has been modified.
+ * Ids and names can also change while an element is in the list, so a hit is always checked
+ * against the element, and a miss falls back to a search of the list, which rebuilds the index if
+ * it finds something. Each index is published together with the modification count it was built
+ * at, so a reader on another thread sees either a complete index or none.
+ *
  * @param <E>
  */
 public class IdentifiableList<E extends Identifiable> extends ArrayList<E> {
     private static final long serialVersionUID = -2350184908321182804L;
-    
+
+    /**
+     * ArrayList does not count a replacement as a modification, so set() counts them here.
+     */
+    private transient int replaceCount;
+
+    private transient volatile Index<E> idIndex;
+
+    private transient volatile Index<E> nameIndex;
+
+    @Override
+    public E set(int index, E element) {
+        replaceCount++;
+        return super.set(index, element);
+    }
+
     public String createId(String prefix) {
         for (int i = 0; ; i++) {
             if (get(prefix + i) == null) {
@@ -26,11 +47,87 @@ public class IdentifiableList<E extends Identifiable> extends ArrayList<E> {
     }
 
     public E get(String id) {
-        for (E e : this) {
-            if (e.getId().equals(id)) {
-                return e;
+        if (id == null) {
+            return null;
+        }
+        Index<E> index = idIndex;
+        if (index == null || index.modCount != modCount + replaceCount) {
+            index = buildIdIndex();
+        }
+        E e = index.map.get(id);
+        if (e != null && id.equals(e.getId())) {
+            return e;
+        }
+        for (E candidate : this) {
+            if (candidate.getId().equals(id)) {
+                buildIdIndex();
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the first element that is Named with the given name, or null if there is none.
+     */
+    public E getByName(String name) {
+        if (name == null) {
+            return null;
+        }
+        Index<E> index = nameIndex;
+        if (index == null || index.modCount != modCount + replaceCount) {
+            index = buildNameIndex();
+        }
+        E e = index.map.get(name);
+        if (e != null && name.equals(((Named) e).getName())) {
+            return e;
+        }
+        for (E candidate : this) {
+            if (candidate instanceof Named && name.equals(((Named) candidate).getName())) {
+                buildNameIndex();
+                return candidate;
             }
         }
         return null;
     }
+
+    private Index<E> buildIdIndex() {
+        int indexModCount = modCount + replaceCount;
+        Map<String, E> map = new HashMap<>();
+        for (E e : this) {
+            if (e.getId() != null) {
+                map.putIfAbsent(e.getId(), e);
+            }
+        }
+        Index<E> index = new Index<>(map, indexModCount);
+        idIndex = index;
+        return index;
+    }
+
+    private Index<E> buildNameIndex() {
+        int indexModCount = modCount + replaceCount;
+        Map<String, E> map = new HashMap<>();
+        for (E e : this) {
+            if (e instanceof Named && ((Named) e).getName() != null) {
+                map.putIfAbsent(((Named) e).getName(), e);
+            }
+        }
+        Index<E> index = new Index<>(map, indexModCount);
+        nameIndex = index;
+        return index;
+    }
+
+    /**
+     * An index and the modification count of the list it was built from. It is not changed once
+     * it is published.
+     */
+    private static class Index<E> {
+        final Map<String, E> map;
+        final int modCount;
+
+        Index(Map<String, E> map, int modCount) {
+            this.map = map;
+            this.modCount = modCount;
+        }
+    }
 }
@@ -0,0 +1,101 @@
+package org.openpnp.util;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.ObjectName;
+
+import org.pmw.tinylog.Logger;
+
+/**
+ * A registry of named duration histograms for finding out where machine time goes. Anything can
+ * record into a histogram by name, which creates it on first use and registers it with the
+ * platform MBean server as org.openpnp:type=Metrics,name=<name> so that it can be watched live
+ * with JConsole or VisualVM. writeCsv() dumps all of them at once.
+ *
+ * Names are dotted paths grouped by the subsystem that records them, e.g. job.step.Pick,
+ * driver.roundTrip or vision.stage.MatchTemplate.
+ */
+public class Metrics {
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Records a duration in nanoseconds into the named histogram.
+     */
+    public static void record(String name, long nanos) {
+        getHistogram(name).record(nanos);
+    }
+
+    /**
+     * Records the time elapsed since startNanos, a VirtualClock.nanoTime() value, into the named
+     * histogram.
+     */
+    public static void recordSince(String name, long startNanos) {
+        record(name, VirtualClock.nanoTime() - startNanos);
+    }
+
+    public static Histogram getHistogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(name, Metrics::createHistogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns all histograms sorted by name.
+     */
+    public static Map<String, Histogram> getHistograms() {
+        return Collections.unmodifiableMap(new TreeMap<>(histograms));
+    }
+
+    /**
+     * Clears all recorded values. The histograms stay registered.
+     */
+    public static void reset() {
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Writes one line per histogram that has recorded values, with all durations in
+     * milliseconds.
+     */
+    public static void writeCsv(File file) throws Exception {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("name,count,total_ms,mean_ms,min_ms,p50_ms,p90_ms,p99_ms,max_ms");
+            for (Map.Entry<String, Histogram> entry : getHistograms().entrySet()) {
+                Histogram histogram = entry.getValue();
+                if (histogram.getCount() == 0) {
+                    continue;
+                }
+                out.println(String.format(Locale.US, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                        entry.getKey(), histogram.getCount(), histogram.getTotalMilliseconds(),
+                        histogram.getMeanMilliseconds(), histogram.getMinMilliseconds(),
+                        histogram.get50thPercentileMilliseconds(),
+                        histogram.get90thPercentileMilliseconds(),
+                        histogram.get99thPercentileMilliseconds(),
+                        histogram.getMaxMilliseconds()));
+            }
+        }
+    }
+
+    private static Histogram createHistogram(String name) {
+        Histogram histogram = new Histogram();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(histogram,
+                    new ObjectName("org.openpnp:type=Metrics,name=" + ObjectName.quote(name)));
+        }
+        catch (Exception e) {
+            Logger.debug("Failed to register metrics histogram {} with JMX: {}", name, e);
+        }
+        return histogram;
+    }
+}
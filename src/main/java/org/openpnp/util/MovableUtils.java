@@ -1,5 +1,7 @@
 package org.openpnp.util;
 
+import java.util.Arrays;
+
 import org.openpnp.model.Location;
 import org.openpnp.spi.Head;
 import org.openpnp.spi.HeadMountable;
@@ -8,7 +10,8 @@ public class MovableUtils {
     /**
      * Moves the given HeadMountable to the specified Location by first commanding the head to
      * safe-Z all of it's components, then moving the HeadMountable in X, Y and C, followed by
-     * moving in Z.
+     * moving in Z. The last two moves are issued as one sequence so the controller may blend
+     * them.
      * 
      * @param hm
      * @param location
@@ -19,8 +22,8 @@ public class MovableUtils {
             throws Exception {
         Head head = hm.getHead();
         head.moveToSafeZ(speed);
-        hm.moveTo(location.derive(null, null, Double.NaN, null), speed);
-        hm.moveTo(location, speed);
+        hm.moveToSequence(Arrays.asList(location.derive(null, null, Double.NaN, null), location),
+                speed);
     }
 
     public static void moveToLocationAtSafeZ(HeadMountable hm, Location location) throws Exception {
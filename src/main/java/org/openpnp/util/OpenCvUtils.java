@@ -250,23 +250,61 @@ public class OpenCvUtils {
      * Ported from the C++ version in FireSight by Karl Lew, which is licensed under the 
      * MIT license.
      * https://github.com/firepick1/FireSight
+     * 
+     * The Mat is copied out in a single bulk transfer and the search runs over the copy, which
+     * avoids a JNI call and an array allocation for every pixel read. Only the first channel is
+     * examined.
+     * 
      * @param mat
      * @param rangeMin
      * @param rangeMax
      * @return
      */
     public static List<java.awt.Point> matMaxima(Mat mat, double rangeMin, double rangeMax) {
+        int rows = mat.rows();
+        int cols = mat.cols();
+        if (rows == 0 || cols == 0) {
+            return new ArrayList<>();
+        }
+        if (mat.type() == CvType.CV_32FC1) {
+            float[] data = new float[rows * cols];
+            mat.get(0, 0, data);
+            return matMaxima(new FloatValues(data, cols), rows, cols, rangeMin, rangeMax);
+        }
+        Mat values = mat;
+        if (mat.channels() > 1) {
+            values = new Mat();
+            Core.extractChannel(mat, values, 0);
+        }
+        if (values.depth() != CvType.CV_64F) {
+            Mat converted = new Mat();
+            values.convertTo(converted, CvType.CV_64F);
+            if (values != mat) {
+                values.release();
+            }
+            values = converted;
+        }
+        double[] data = new double[rows * cols];
+        values.get(0, 0, data);
+        if (values != mat) {
+            values.release();
+        }
+        return matMaxima(new DoubleValues(data, cols), rows, cols, rangeMin, rangeMax);
+    }
+
+    private static List<java.awt.Point> matMaxima(MatValues mat, int rows, int cols,
+            double rangeMin, double rangeMax) {
         List<java.awt.Point> locations = new ArrayList<>();
 
-        int rEnd = mat.rows() - 1;
-        int cEnd = mat.cols() - 1;
+        int rEnd = rows - 1;
+        int cEnd = cols - 1;
 
         // CHECK EACH ROW MAXIMA FOR LOCAL 2D MAXIMA
         for (int r = 0; r <= rEnd; r++) {
             MinMaxState state = MinMaxState.BEFORE_INFLECTION;
-            double curVal = mat.get(r, 0)[0];
+            double curVal = mat.get(r, 0);
             for (int c = 1; c <= cEnd; c++) {
-                double val = mat.get(r, c)[0];
+                double val = mat.get(r, c);
 
                 if (val == curVal) {
                     continue;
@@ -283,27 +321,21 @@ public class OpenCvUtils {
                     if (state == MinMaxState.BEFORE_INFLECTION) {
                         if (rangeMin <= curVal && curVal <= rangeMax) { // ROW
                                                                         // MAXIMA
-                            if (0 < r && (mat.get(r - 1, c - 1)[0] >= curVal
-                                    || mat.get(r - 1, c)[0] >= curVal)) {
-                                // cout << "reject:r-1 " << r << "," << c-1 <<
-                                // endl;
+                            if (0 < r && (mat.get(r - 1, c - 1) >= curVal
+                                    || mat.get(r - 1, c) >= curVal)) {
                                 // - x x
                                 // - - -
                                 // - - -
                             }
-                            else if (r < rEnd && (mat.get(r + 1, c - 1)[0] > curVal
-                                    || mat.get(r + 1, c)[0] > curVal)) {
-                                // cout << "reject:r+1 " << r << "," << c-1 <<
-                                // endl;
+                            else if (r < rEnd && (mat.get(r + 1, c - 1) > curVal
+                                    || mat.get(r + 1, c) > curVal)) {
                                 // - - -
                                 // - - -
                                 // - x x
                             }
-                            else if (1 < c && (0 < r && mat.get(r - 1, c - 2)[0] >= curVal
-                                    || mat.get(r, c - 2)[0] > curVal
-                                    || r < rEnd && mat.get(r + 1, c - 2)[0] > curVal)) {
-                                // cout << "reject:c-2 " << r << "," << c-1 <<
-                                // endl;
+                            else if (1 < c && (0 < r && mat.get(r - 1, c - 2) >= curVal
+                                    || mat.get(r, c - 2) > curVal
+                                    || r < rEnd && mat.get(r + 1, c - 2) > curVal)) {
                                 // x - -
                                 // x - -
                                 // x - -
@@ -325,27 +357,21 @@ public class OpenCvUtils {
             // PROCESS END OF ROW
             if (state == MinMaxState.BEFORE_INFLECTION) {
                 if (rangeMin <= curVal && curVal <= rangeMax) { // ROW MAXIMA
-                    if (0 < r && (mat.get(r - 1, cEnd - 1)[0] >= curVal
-                            || mat.get(r - 1, cEnd)[0] >= curVal)) {
-                        // cout << "rejectEnd:r-1 " << r << "," << cEnd-1 <<
-                        // endl;
+                    if (0 < r && (mat.get(r - 1, cEnd - 1) >= curVal
+                            || mat.get(r - 1, cEnd) >= curVal)) {
                         // - x x
                         // - - -
                         // - - -
                     }
-                    else if (r < rEnd && (mat.get(r + 1, cEnd - 1)[0] > curVal
-                            || mat.get(r + 1, cEnd)[0] > curVal)) {
-                        // cout << "rejectEnd:r+1 " << r << "," << cEnd-1 <<
-                        // endl;
+                    else if (r < rEnd && (mat.get(r + 1, cEnd - 1) > curVal
+                            || mat.get(r + 1, cEnd) > curVal)) {
                         // - - -
                         // - - -
                         // - x x
                     }
-                    else if (1 < r && mat.get(r - 1, cEnd - 2)[0] >= curVal
-                            || mat.get(r, cEnd - 2)[0] > curVal
-                            || r < rEnd && mat.get(r + 1, cEnd - 2)[0] > curVal) {
-                        // cout << "rejectEnd:cEnd-2 " << r << "," << cEnd-1 <<
-                        // endl;
+                    else if (1 < r && mat.get(r - 1, cEnd - 2) >= curVal
+                            || mat.get(r, cEnd - 2) > curVal
+                            || r < rEnd && mat.get(r + 1, cEnd - 2) > curVal) {
                         // x - -
                         // x - -
                         // x - -
@@ -358,5 +384,42 @@ public class OpenCvUtils {
         }
 
         return locations;
-    }    
+    }
+
+    /**
+     * Row major view of the values copied out of a Mat by matMaxima().
+     */
+    private static abstract class MatValues {
+        abstract double get(int row, int col);
+    }
+
+    private static class FloatValues extends MatValues {
+        final float[] data;
+        final int cols;
+
+        FloatValues(float[] data, int cols) {
+            this.data = data;
+            this.cols = cols;
+        }
+
+        @Override
+        double get(int row, int col) {
+            return data[row * cols + col];
+        }
+    }
+
+    private static class DoubleValues extends MatValues {
+        final double[] data;
+        final int cols;
+
+        DoubleValues(double[] data, int cols) {
+            this.data = data;
+            this.cols = cols;
+        }
+
+        @Override
+        double get(int row, int col) {
+            return data[row * cols + col];
+        }
+    }
 }
@@ -0,0 +1,79 @@
+package org.openpnp.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The clock that machine timing is measured and waited on with. Normally this is simply the
+ * system clock and sleep() really sleeps. When virtual time is enabled, usually by a simulated
+ * driver, time only passes when something calls sleep() or advance(), so a simulated job runs as
+ * fast as the computer allows while the clock still reads the time the physical machine would
+ * have taken.
+ *
+ * Virtual time is a single timeline, which suits the job processor driving the machine from one
+ * thread. Time spent computing, such as vision processing, does not advance it.
+ */
+public class VirtualClock {
+    private static volatile boolean enabled;
+
+    private static final AtomicLong virtualNanos = new AtomicLong();
+
+    /**
+     * System.currentTimeMillis() and the virtual nanoTime() when virtual time was enabled, so
+     * that currentTimeMillis() continues from the wall clock.
+     */
+    private static volatile long enabledMillis;
+    private static volatile long enabledNanos;
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static synchronized void setEnabled(boolean enabled) {
+        if (enabled && !VirtualClock.enabled) {
+            virtualNanos.set(System.nanoTime());
+            enabledNanos = virtualNanos.get();
+            enabledMillis = System.currentTimeMillis();
+        }
+        VirtualClock.enabled = enabled;
+    }
+
+    /**
+     * Returns System.nanoTime(), or the virtual time in nanoseconds when virtual time is
+     * enabled.
+     */
+    public static long nanoTime() {
+        return enabled ? virtualNanos.get() : System.nanoTime();
+    }
+
+    /**
+     * Returns System.currentTimeMillis(), or the virtual time in milliseconds when virtual time
+     * is enabled.
+     */
+    public static long currentTimeMillis() {
+        if (!enabled) {
+            return System.currentTimeMillis();
+        }
+        return enabledMillis + (virtualNanos.get() - enabledNanos) / 1000000;
+    }
+
+    /**
+     * Waits for the given time, or advances the virtual time by it when virtual time is enabled.
+     */
+    public static void sleep(long millis) throws InterruptedException {
+        if (enabled) {
+            advance(millis * 1000000);
+        }
+        else {
+            Thread.sleep(millis);
+        }
+    }
+
+    /**
+     * Advances the virtual time. Does nothing when virtual time is not enabled.
+     */
+    public static void advance(long nanos) {
+        if (enabled && nanos > 0) {
+            virtualNanos.addAndGet(nanos);
+        }
+    }
+}
@@ -357,7 +357,7 @@ public class FluentCv {
 
     public FluentCv settleAndCapture(String... tag) {
         checkCamera();
-        return toMat(camera.settleAndCapture(), tag);
+        return store(camera.settleAndCaptureMat(), tag);
     }
 
     /**
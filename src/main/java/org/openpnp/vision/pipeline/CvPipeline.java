@@ -1,24 +1,40 @@
 package org.openpnp.vision.pipeline;
 
+import java.awt.Color;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
+import org.openpnp.util.Metrics;
 import org.openpnp.vision.pipeline.CvStage.Result;
+import org.pmw.tinylog.Logger;
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Element;
+import org.simpleframework.xml.ElementArray;
 import org.simpleframework.xml.ElementList;
+import org.simpleframework.xml.ElementMap;
 import org.simpleframework.xml.Root;
 import org.simpleframework.xml.Serializer;
 import org.simpleframework.xml.convert.AnnotationStrategy;
+import org.simpleframework.xml.core.Commit;
 import org.simpleframework.xml.core.Persister;
 import org.simpleframework.xml.stream.Format;
 import org.simpleframework.xml.stream.HyphenStyle;
@@ -62,6 +78,27 @@ public class CvPipeline implements AutoCloseable {
     
     private long totalProcessingTimeNs;
     
+    /**
+     * In production mode the pipeline only keeps result images for the stages that other stages
+     * read images from. Every other result only has a model. The kept images are copied into
+     * Mats from a shared pool instead of being cloned. Intermediate images are not available, so
+     * the pipeline editor turns this off.
+     */
+    private boolean productionMode = false;
+    
+    /**
+     * Result images of this pipeline that were taken from the pool.
+     */
+    private List<Mat> pooledImages = new ArrayList<>();
+    
+    /**
+     * Mats released by production mode pipelines, kept so the next run of any pipeline can
+     * reuse their memory instead of allocating new images.
+     */
+    private static final ArrayDeque<Mat> matPool = new ArrayDeque<>();
+    
+    private static final int MAX_POOLED_MATS = 8;
+    
     public CvPipeline() {
         
     }
@@ -193,6 +230,7 @@ public class CvPipeline implements AutoCloseable {
     public void process() {
         totalProcessingTimeNs = 0;
         release();
+        Set<String> imageStageNames = productionMode ? getImageStageNames() : null;
         for (CvStage stage : stages) {
             // Process and time the stage and get the result.
             long processingTimeNs = System.nanoTime();
@@ -208,6 +246,7 @@ public class CvPipeline implements AutoCloseable {
             }
             processingTimeNs = System.nanoTime() - processingTimeNs;
             totalProcessingTimeNs += processingTimeNs;
+            Metrics.record("vision.stage." + stage.getClass().getSimpleName(), processingTimeNs);
 
             Mat image = null;
             Object model = null;
@@ -218,6 +257,28 @@ public class CvPipeline implements AutoCloseable {
             if(stage.isEnabled() && model != null) {
               workingModel=model;
             }
+            if (productionMode) {
+                // A stage can return the kept image of an earlier stage, which belongs to the
+                // pool. Copy it, so the working image never is a pooled Mat.
+                if (image != null && isPooledImage(image)) {
+                    image = image.clone();
+                }
+                if (image != null) {
+                    if (workingImage != null && workingImage != image) {
+                        workingImage.release();
+                    }
+                    workingImage = image;
+                }
+                // Only keep a copy of the working image if another stage will read it.
+                image = null;
+                if (workingImage != null && imageStageNames.contains(stage.getName())) {
+                    image = takePooledMat();
+                    pooledImages.add(image);
+                    workingImage.copyTo(image);
+                }
+                results.put(stage, new Result(image, model, processingTimeNs));
+                continue;
+            }
             // If the result image is null and there is a working image,
             // replace the result image with a clone of the working image.
             if (image == null) {
@@ -252,14 +313,68 @@ public class CvPipeline implements AutoCloseable {
             workingImage = null;
         }
         for (Result result : results.values()) {
-            if (result.image != null) {
+            if (result.image != null && !isPooledImage(result.image)) {
                 result.image.release();
             }
         }
+        for (Mat mat : pooledImages) {
+            returnPooledMat(mat);
+        }
+        pooledImages.clear();
         workingModel = null;
         results.clear();
     }
     
+    private boolean isPooledImage(Mat image) {
+        for (Mat mat : pooledImages) {
+            if (mat == image) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static Mat takePooledMat() {
+        synchronized (matPool) {
+            Mat mat = matPool.poll();
+            if (mat != null) {
+                return mat;
+            }
+        }
+        return new Mat();
+    }
+    
+    private static void returnPooledMat(Mat mat) {
+        synchronized (matPool) {
+            if (matPool.size() < MAX_POOLED_MATS && !matPool.contains(mat)) {
+                matPool.push(mat);
+                return;
+            }
+        }
+        mat.release();
+    }
+    
+    /**
+     * Returns the names of the stages whose result images are needed in production mode.
+     */
+    private Set<String> getImageStageNames() {
+        Set<String> names = new HashSet<>();
+        for (CvStage stage : stages) {
+            if (stage.isEnabled()) {
+                names.addAll(stage.usedImageStageNames());
+            }
+        }
+        return names;
+    }
+    
+    public boolean isProductionMode() {
+        return productionMode;
+    }
+
+    public void setProductionMode(boolean productionMode) {
+        this.productionMode = productionMode;
+    }
+    
     @Override
     public void close() throws IOException {
         release();
@@ -310,8 +425,24 @@ public class CvPipeline implements AutoCloseable {
         }
     }
 
+    /**
+     * Returns a copy of the pipeline's stages, the same as the pipeline read back from
+     * toXmlString() would have. Stages are copied directly when all of their persisted fields
+     * hold immutable values, which is much faster than going through XML. Otherwise the copy
+     * is made through XML.
+     */
     @Override
     public CvPipeline clone() throws CloneNotSupportedException {
+        try {
+            CvPipeline pipeline = new CvPipeline();
+            for (CvStage stage : stages) {
+                pipeline.add(stage.getName(), copyStage(stage));
+            }
+            return pipeline;
+        }
+        catch (Exception e) {
+            Logger.trace("Copying pipeline through XML: {}", e.getMessage());
+        }
         try {
             return new CvPipeline(toXmlString());
         }
@@ -320,6 +451,65 @@ public class CvPipeline implements AutoCloseable {
         }
     }
     
+    private static CvStage copyStage(CvStage stage) throws Exception {
+        Constructor<? extends CvStage> constructor = stage.getClass().getDeclaredConstructor();
+        constructor.setAccessible(true);
+        CvStage copy = constructor.newInstance();
+        for (Class<?> c = stage.getClass(); c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || !isPersisted(field)) {
+                    continue;
+                }
+                field.setAccessible(true);
+                Object value = field.get(stage);
+                if (value == null) {
+                    // Null values are not written to XML, so the copy keeps its default.
+                    continue;
+                }
+                if (!isImmutable(value)) {
+                    throw new Exception(String.format("%s.%s can't be copied directly.",
+                            c.getSimpleName(), field.getName()));
+                }
+                field.set(copy, value);
+            }
+        }
+        // Call the same hooks that reading from XML would.
+        for (Class<?> c = stage.getClass(); c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Commit.class) && method.getParameterCount() == 0) {
+                    method.setAccessible(true);
+                    method.invoke(copy);
+                }
+            }
+        }
+        return copy;
+    }
+    
+    private static boolean isPersisted(Field field) {
+        for (Annotation annotation : field.getAnnotations()) {
+            Class<? extends Annotation> type = annotation.annotationType();
+            if (type == Attribute.class || type == Element.class || type == ElementList.class
+                    || type == ElementArray.class || type == ElementMap.class) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean isImmutable(Object value) {
+        return value instanceof String 
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof Enum
+                || value.getClass() == Byte.class
+                || value.getClass() == Short.class
+                || value.getClass() == Integer.class
+                || value.getClass() == Long.class
+                || value.getClass() == Float.class
+                || value.getClass() == Double.class
+                || value.getClass() == Color.class;
+    }
+    
     public Object getProperty(String name) {
         return properties.get(name);
     }
@@ -7,6 +7,8 @@ import java.beans.EventSetDescriptor;
 import java.beans.Introspector;
 import java.beans.MethodDescriptor;
 import java.beans.PropertyDescriptor;
+import java.util.Collection;
+import java.util.Collections;
 
 import org.opencv.core.Mat;
 import org.simpleframework.xml.Attribute;
@@ -40,6 +42,17 @@ public abstract class CvStage {
      */
     public abstract Result process(CvPipeline pipeline) throws Exception;
 
+    /**
+     * Returns the names of the stages whose result images this stage reads during process().
+     * In production mode the pipeline only keeps result images for these stages. This is
+     * deliberately not named like a getter so that it is not shown as a stage property.
+     * 
+     * @return
+     */
+    public Collection<String> usedImageStageNames() {
+        return Collections.emptyList();
+    }
+
     public String getName() {
         return name;
     }
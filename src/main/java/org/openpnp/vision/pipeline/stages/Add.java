@@ -1,5 +1,8 @@
 package org.openpnp.vision.pipeline.stages;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
 import org.opencv.core.Scalar;
@@ -57,6 +60,11 @@ public class Add extends CvStage {
         this.secondScalar = v;
     }
 
+    @Override
+    public Collection<String> usedImageStageNames() {
+        return Arrays.asList(firstStageName, secondStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (firstStageName == null) {
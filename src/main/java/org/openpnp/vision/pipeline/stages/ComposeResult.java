@@ -19,6 +19,9 @@
 
 package org.openpnp.vision.pipeline.stages;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import org.opencv.core.Mat;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
@@ -57,6 +60,11 @@ public class ComposeResult extends CvStage {
         this.modelStageName = modelStageName;
     }
 
+    @Override
+    public Collection<String> usedImageStageNames() {
+        return Collections.singletonList(imageStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
 
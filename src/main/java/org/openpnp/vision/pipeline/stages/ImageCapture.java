@@ -7,7 +7,6 @@ import org.opencv.core.Mat;
 import org.opencv.core.MatOfDouble;
 import org.opencv.core.CvType;
 import org.openpnp.spi.Camera;
-import org.openpnp.util.OpenCvUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.simpleframework.xml.Attribute;
@@ -47,8 +46,17 @@ public class ImageCapture extends CvStage {
         }
     }
 
+    /**
+     * If the pipeline has a "frame" property, a copy of that Mat is used instead of capturing from
+     * the camera. This lets frames that were captured up front be processed later, for instance on
+     * another thread.
+     */
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
+        Mat frame = (Mat) pipeline.getProperty("frame");
+        if (frame != null) {
+            return new Result(frame.clone());
+        }
         Camera camera = (Camera) pipeline.getProperty("camera");
         if (camera == null) {
             throw new Exception("No Camera set on pipeline.");
@@ -56,19 +64,20 @@ public class ImageCapture extends CvStage {
         Mat image;
         Mat avgImage;
         if (settleFirst) {
-            image = OpenCvUtils.toMat(camera.settleAndCapture());
+            image = camera.settleAndCaptureMat();
         }
         else {
-            image = OpenCvUtils.toMat(camera.capture());
+            image = camera.captureMat();
         }
         image.convertTo(image, 6); //6=CV_64F
         avgImage = image;
         double beta = 1.0/count;
         Core.addWeighted(avgImage, 0, image, beta, 0, avgImage); // avgImage = image/count
         for (int i=1; i<count; i++) {
-            image = OpenCvUtils.toMat(camera.capture());
+            image = camera.captureMat();
             image.convertTo(image, 6);
             Core.addWeighted(avgImage, 1, image, beta, 0, avgImage); // avgImage = avgImag + image/count
+            image.release();
         }
         avgImage.convertTo(avgImage, 0); //0=CV_8U
         return new Result(avgImage);
@@ -21,6 +21,7 @@ package org.openpnp.vision.pipeline.stages;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -32,7 +33,6 @@ import org.opencv.core.Rect;
 import org.opencv.core.RotatedRect;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
-import org.openpnp.util.OpenCvUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.CvStage.Result.TemplateMatch;
@@ -85,6 +85,19 @@ public class MatchPartTemplate extends CvStage {
             description = "If maximum value is below this value, then no matches will be reported. Default is 0.4.")
     private double threshold = 0.4f;
 
+    /**
+     * Number of times the image and template are halved for a coarse search before the best
+     * candidates are matched at full resolution. 0 matches at full resolution only.
+     */
+    @Attribute(required = false)
+    @Property(description = "Number of times to halve the image for a coarse search before refining the best candidates at full resolution. 0 disables the coarse search.")
+    private int pyramidLevels = 0;
+
+    /**
+     * Coarse search peaks scoring at least this fraction of the best one are refined.
+     */
+    private static final double PYRAMID_CANDIDATE_RATIO = 0.8;
+
     public String getTemplateStageName() {
         return templateStageName;
     }
@@ -109,6 +122,19 @@ public class MatchPartTemplate extends CvStage {
         this.threshold = threshold;
     }
 
+    public int getPyramidLevels() {
+        return pyramidLevels;
+    }
+
+    public void setPyramidLevels(int pyramidLevels) {
+        this.pyramidLevels = pyramidLevels;
+    }
+
+    @Override
+    public Collection<String> usedImageStageNames() {
+        return Collections.singletonList(templateStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
 
@@ -282,9 +308,8 @@ public class MatchPartTemplate extends CvStage {
 
     Result matchTemplate(Mat mat, Mat template) {
 
-        Mat result = new Mat();
-
-        Imgproc.matchTemplate(mat, template, result, Imgproc.TM_CCOEFF_NORMED);
+        Mat result = MatchTemplate.matchTemplate(mat, template, null, pyramidLevels,
+                PYRAMID_CANDIDATE_RATIO);
 
         MinMaxLocResult mmr = Core.minMaxLoc(result);
         double maxVal = mmr.maxVal;
@@ -294,7 +319,7 @@ public class MatchPartTemplate extends CvStage {
         // Since matchTemplate type is fixed to TM_CCOEFF_NORMED, corr is not actually needed
         // Using just threshold is enought
         List<TemplateMatch> matches = new ArrayList<>();
-        for (Point point : OpenCvUtils.matMaxima(result, threshold, rangeMax)) {
+        for (Point point : MatchTemplate.matchMaxima(result, threshold, rangeMax)) {
             int x = point.x;
             int y = point.y;
             TemplateMatch match =
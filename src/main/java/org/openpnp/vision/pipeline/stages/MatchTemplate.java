@@ -2,13 +2,17 @@ package org.openpnp.vision.pipeline.stages;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
 import org.opencv.core.Core;
 import org.opencv.core.Core.MinMaxLocResult;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
@@ -55,6 +59,44 @@ public class MatchTemplate extends CvStage {
     @Property(description = "Normalize results to maximum value.")
     private boolean normalize = true;
 
+    /**
+     * Number of times the image and template are halved for a coarse search before the best
+     * candidates are matched at full resolution. 0 matches the full image at full resolution.
+     */
+    @Attribute(required = false)
+    @Property(description = "Number of times to halve the image for a coarse search before refining the best candidates at full resolution. 0 disables the coarse search.")
+    private int pyramidLevels = 0;
+
+    /**
+     * Largest distance in pixels, from the expected location of the template center, at which the
+     * center of a match is searched for. The expected location is taken from the pipeline
+     * property "MatchTemplate.center", an org.opencv.core.Point in image pixels, and is the
+     * center of the image if that is not set. 0 searches the whole image.
+     */
+    @Attribute(required = false)
+    @Property(description = "Largest distance in pixels from the expected location, or the image center, to search for the template center. 0 searches the whole image.")
+    private int searchRadius = 0;
+
+    /**
+     * The most coarse candidates that are refined at full resolution.
+     */
+    private static final int MAX_PYRAMID_CANDIDATES = 32;
+
+    /**
+     * The coarse search is made shallower if it would shrink the template below this size.
+     */
+    private static final int MIN_PYRAMID_TEMPLATE_SIZE = 8;
+
+    /**
+     * Coarse search peaks scoring at least this fraction of the best one are refined.
+     */
+    private static final double PYRAMID_CANDIDATE_RATIO = 0.8;
+
+    /**
+     * The score that the parts of a result map that were not matched are set to.
+     */
+    private static final double UNMATCHED = -1;
+
     public String getTemplateStageName() {
         return templateStageName;
     }
@@ -87,6 +129,27 @@ public class MatchTemplate extends CvStage {
         this.normalize = normalize;
     }
 
+    public int getPyramidLevels() {
+        return pyramidLevels;
+    }
+
+    public void setPyramidLevels(int pyramidLevels) {
+        this.pyramidLevels = pyramidLevels;
+    }
+
+    public int getSearchRadius() {
+        return searchRadius;
+    }
+
+    public void setSearchRadius(int searchRadius) {
+        this.searchRadius = searchRadius;
+    }
+
+    @Override
+    public Collection<String> usedImageStageNames() {
+        return Collections.singletonList(templateStageName);
+    }
+
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         if (templateStageName == null) {
@@ -95,9 +158,19 @@ public class MatchTemplate extends CvStage {
 
         Mat mat = pipeline.getWorkingImage();
         Mat template = pipeline.getResult(templateStageName).image;
-        Mat result = new Mat();
-
-        Imgproc.matchTemplate(mat, template, result, Imgproc.TM_CCOEFF_NORMED);
+        Rect searchRect = null;
+        if (searchRadius > 0) {
+            org.opencv.core.Point center =
+                    (org.opencv.core.Point) pipeline.getProperty("MatchTemplate.center");
+            if (center == null) {
+                center = new org.opencv.core.Point(mat.cols() / 2, mat.rows() / 2);
+            }
+            searchRect = new Rect((int) Math.round(center.x) - template.cols() / 2 - searchRadius,
+                    (int) Math.round(center.y) - template.rows() / 2 - searchRadius,
+                    2 * searchRadius + 1, 2 * searchRadius + 1);
+        }
+        Mat result = matchTemplate(mat, template, searchRect, pyramidLevels,
+                PYRAMID_CANDIDATE_RATIO);
 
         MinMaxLocResult mmr = Core.minMaxLoc(result);
         double maxVal = mmr.maxVal;
@@ -107,7 +180,7 @@ public class MatchTemplate extends CvStage {
 
 
         List<TemplateMatch> matches = new ArrayList<>();
-        for (Point point : OpenCvUtils.matMaxima(result, rangeMin, rangeMax)) {
+        for (Point point : matchMaxima(result, rangeMin, rangeMax)) {
             int x = point.x;
             int y = point.y;
             TemplateMatch match = new TemplateMatch(x, y, template.cols(), template.rows(),
@@ -125,4 +198,166 @@ public class MatchTemplate extends CvStage {
 
         return new Result(result, matches);
     }
+
+    /**
+     * Matches the template against the image with TM_CCOEFF_NORMED and returns a result map of the
+     * same size as a plain Imgproc.matchTemplate() would. If searchRect is not null only that
+     * part of the map is matched. With pyramidLevels above 0 the search is first done with the
+     * image and template halved that many times, and only the windows around the coarse peaks
+     * that score at least candidateRatio times the best one are matched at full resolution. The
+     * parts of the map that are not matched are set to -1, the lowest possible score. Each
+     * matched window is one pixel larger on every side than the area it covers, so that
+     * matchMaxima() can tell the peaks inside it from the edges of the window.
+     */
+    public static Mat matchTemplate(Mat image, Mat template, Rect searchRect, int pyramidLevels,
+            double candidateRatio) {
+        int resultCols = image.cols() - template.cols() + 1;
+        int resultRows = image.rows() - template.rows() + 1;
+        Rect resultRect = new Rect(0, 0, resultCols, resultRows);
+        Rect search = searchRect == null ? resultRect : intersect(searchRect, resultRect);
+        int levels = pyramidLevels;
+        while (levels > 0 && Math.min(template.cols(), template.rows()) >> levels < MIN_PYRAMID_TEMPLATE_SIZE) {
+            levels--;
+        }
+        if (resultCols <= 0 || resultRows <= 0 || search.width <= 0 || search.height <= 0
+                || (levels == 0 && search.equals(resultRect))) {
+            Mat result = new Mat();
+            Imgproc.matchTemplate(image, template, result, Imgproc.TM_CCOEFF_NORMED);
+            return result;
+        }
+
+        Mat result = new Mat(resultRows, resultCols, CvType.CV_32F, new Scalar(UNMATCHED));
+        if (levels == 0) {
+            matchWindow(image, template, pad(search, resultRect), result);
+            return result;
+        }
+
+        Mat searchImage = image.submat(new Rect(search.x, search.y,
+                search.width + template.cols() - 1, search.height + template.rows() - 1));
+        Mat coarseImage = pyrDown(searchImage, levels);
+        Mat coarseTemplate = pyrDown(template, levels);
+        searchImage.release();
+        if (coarseImage.cols() < coarseTemplate.cols() || coarseImage.rows() < coarseTemplate.rows()) {
+            coarseImage.release();
+            coarseTemplate.release();
+            matchWindow(image, template, pad(search, resultRect), result);
+            return result;
+        }
+        Mat coarse = new Mat();
+        Imgproc.matchTemplate(coarseImage, coarseTemplate, coarse, Imgproc.TM_CCOEFF_NORMED);
+        coarseImage.release();
+        coarseTemplate.release();
+
+        double coarseMax = Core.minMaxLoc(coarse).maxVal;
+        List<Point> candidates =
+                OpenCvUtils.matMaxima(coarse, Math.min(coarseMax, coarseMax * candidateRatio), coarseMax);
+        float[] coarseScores = toFloats(coarse);
+        int coarseCols = coarse.cols();
+        Collections.sort(candidates, (a, b) -> Float.compare(coarseScores[b.y * coarseCols + b.x],
+                coarseScores[a.y * coarseCols + a.x]));
+        int scale = 1 << levels;
+        int margin = 2 * scale;
+        for (Point candidate : candidates.subList(0, Math.min(candidates.size(), MAX_PYRAMID_CANDIDATES))) {
+            Rect window = intersect(new Rect(search.x + candidate.x * scale - margin,
+                    search.y + candidate.y * scale - margin, 2 * margin + 1, 2 * margin + 1), search);
+            if (window.width > 0 && window.height > 0) {
+                matchWindow(image, template, pad(window, resultRect), result);
+            }
+        }
+        coarse.release();
+        return result;
+    }
+
+    /**
+     * Returns the local maxima of a result map from matchTemplate() whose scores are in the
+     * range, like OpenCvUtils.matMaxima(), but leaves out those next to a part of the map that
+     * was not matched. Those are at the edge of a matched window and may only look like a peak
+     * because the score beyond the edge is unknown.
+     */
+    public static List<Point> matchMaxima(Mat result, double rangeMin, double rangeMax) {
+        List<Point> maxima = new ArrayList<>();
+        List<Point> candidates = OpenCvUtils.matMaxima(result, rangeMin, rangeMax);
+        if (candidates.isEmpty()) {
+            return maxima;
+        }
+        float[] scores = toFloats(result);
+        for (Point point : candidates) {
+            if (!isNextToUnmatched(scores, result.rows(), result.cols(), point.x, point.y)) {
+                maxima.add(point);
+            }
+        }
+        return maxima;
+    }
+
+    private static boolean isNextToUnmatched(float[] scores, int rows, int cols, int x, int y) {
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int nx = x + dx;
+                int ny = y + dy;
+                if (nx < 0 || ny < 0 || nx >= cols || ny >= rows) {
+                    continue;
+                }
+                if (scores[ny * cols + nx] == UNMATCHED) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the scores of a single channel result map out in one bulk transfer, row major.
+     */
+    private static float[] toFloats(Mat result) {
+        Mat scores = result;
+        if (result.type() != CvType.CV_32FC1) {
+            scores = new Mat();
+            result.convertTo(scores, CvType.CV_32F);
+        }
+        float[] data = new float[result.rows() * result.cols()];
+        scores.get(0, 0, data);
+        if (scores != result) {
+            scores.release();
+        }
+        return data;
+    }
+
+    private static void matchWindow(Mat image, Mat template, Rect window, Mat result) {
+        Mat windowImage = image.submat(new Rect(window.x, window.y,
+                window.width + template.cols() - 1, window.height + template.rows() - 1));
+        Mat windowResult = new Mat();
+        Imgproc.matchTemplate(windowImage, template, windowResult, Imgproc.TM_CCOEFF_NORMED);
+        Mat resultWindow = result.submat(window);
+        windowResult.copyTo(resultWindow);
+        resultWindow.release();
+        windowResult.release();
+        windowImage.release();
+    }
+
+    private static Mat pyrDown(Mat mat, int levels) {
+        Mat result = mat.clone();
+        for (int i = 0; i < levels; i++) {
+            Mat down = new Mat();
+            Imgproc.pyrDown(result, down);
+            result.release();
+            result = down;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the window grown by one pixel on every side, limited to the bounds.
+     */
+    private static Rect pad(Rect window, Rect bounds) {
+        return intersect(new Rect(window.x - 1, window.y - 1, window.width + 2, window.height + 2),
+                bounds);
+    }
+
+    private static Rect intersect(Rect a, Rect b) {
+        int x = Math.max(a.x, b.x);
+        int y = Math.max(a.y, b.y);
+        int width = Math.min(a.x + a.width, b.x + b.width) - x;
+        int height = Math.min(a.y + a.height, b.y + b.height) - y;
+        return new Rect(x, y, Math.max(0, width), Math.max(0, height));
+    }
 }
@@ -157,6 +157,8 @@ public class CvPipelineEditor extends JPanel {
 
     public CvPipelineEditor(CvPipeline pipeline) {
         this.pipeline = pipeline;
+        // The editor shows the result of every stage.
+        pipeline.setProductionMode(false);
 
         setLayout(new BorderLayout(0, 0));
 
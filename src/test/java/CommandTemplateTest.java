@@ -0,0 +1,38 @@
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.machine.reference.driver.CommandTemplate;
+
+public class CommandTemplateTest {
+    @Test
+    public void testSubstitute() {
+        CommandTemplate template = new CommandTemplate(
+                "G0 {X:X%.4f} {Y:Y%.4f} {Z:Z%.4f} {Rotation:E%.4f} F{FeedRate:%.0f} ; {Name}");
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("X", 1.5);
+        variables.put("Y", null);
+        variables.put("Z", -2d);
+        variables.put("Rotation", null);
+        variables.put("FeedRate", 1000d);
+        variables.put("Name", "N1");
+        Assert.assertEquals("G0 X1.5000  Z-2.0000  F1000 ; N1", template.substitute(variables));
+    }
+
+    @Test
+    public void testUnknownVariablesAreKept() {
+        CommandTemplate template = new CommandTemplate("M400 {Unknown:%d}\n{Id}{Id}");
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("Id", "$1\\");
+        Assert.assertEquals("M400 {Unknown:%d}\n$1\\$1\\", template.substitute(variables));
+        Assert.assertTrue(template.hasVariable("Unknown"));
+        Assert.assertFalse(template.hasVariable("X"));
+    }
+
+    @Test
+    public void testNoVariables() {
+        CommandTemplate template = new CommandTemplate("G28 ; Home all axes");
+        Assert.assertEquals("G28 ; Home all axes", template.substitute(new HashMap<>()));
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.CostModelPnpJobPlanner;
+import org.openpnp.model.Board;
+import org.openpnp.model.Board.Side;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Part;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.Head;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.NozzleTip;
+import org.openpnp.spi.PnpJobPlanner.PlannedPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+
+import com.google.common.io.Files;
+
+public class CostModelPnpJobPlannerTest {
+    private Machine machine;
+    private Head head;
+    private Nozzle n1;
+    private Nozzle n2;
+    private NozzleTip nt1;
+    private NozzleTip nt2;
+    private BoardLocation boardLocation;
+    private Random rnd;
+
+    /**
+     * Loads the two nozzle, two nozzle tip machine of BasicJobTest.
+     */
+    @Before
+    public void setUp() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/machine.xml"),
+                new File(workingDirectory, "machine.xml"));
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/packages.xml"),
+                new File(workingDirectory, "packages.xml"));
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/parts.xml"),
+                new File(workingDirectory, "parts.xml"));
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        machine = Configuration.get().getMachine();
+        machine.setEnabled(true);
+        head = machine.getHead("H1");
+        n1 = head.getNozzle("N1");
+        n2 = head.getNozzle("N2");
+        nt1 = machine.getNozzleTip("NT1");
+        nt2 = machine.getNozzleTip("NT2");
+
+        boardLocation = new BoardLocation(new Board());
+        boardLocation.setLocation(new Location(LengthUnit.Millimeters, 100, 100, 0, 0));
+        boardLocation.setSide(Side.Top);
+        rnd = new Random(42);
+    }
+
+    @Test
+    public void testNoNozzleTipChangesWhenLoadedTipsFit() throws Exception {
+        n1.loadNozzleTip(nt1);
+        n2.loadNozzleTip(nt2);
+        Part partA = createPart("A", 1, nt1);
+        Part partB = createPart("B", 1, nt2);
+        List<JobPlacement> jobPlacements = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            jobPlacements.add(createJobPlacement(partA));
+            jobPlacements.add(createJobPlacement(partB));
+        }
+        Assert.assertEquals(0, runJob(new CostModelPnpJobPlanner(), jobPlacements, null));
+    }
+
+    @Test
+    public void testSingleNozzleTipChange() throws Exception {
+        n1.loadNozzleTip(nt1);
+        n2.unloadNozzleTip();
+        Part partA = createPart("A", 1, nt1);
+        Part partB = createPart("B", 1, nt2);
+        List<JobPlacement> jobPlacements = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            jobPlacements.add(createJobPlacement(partA));
+            jobPlacements.add(createJobPlacement(partB));
+        }
+        // N2 loads NT2 once and keeps it for the whole job.
+        Assert.assertEquals(1, runJob(new CostModelPnpJobPlanner(), jobPlacements, null));
+    }
+
+    @Test
+    public void testDoesNotTakeNozzleTipFromOtherNozzle() throws Exception {
+        n1.unloadNozzleTip();
+        n2.loadNozzleTip(nt1);
+        Part part = createPart("A", 1, nt1, nt2);
+        List<JobPlacement> jobPlacements = new ArrayList<>();
+        jobPlacements.add(createJobPlacement(part));
+        jobPlacements.add(createJobPlacement(part));
+
+        List<PlannedPlacement> plannedPlacements =
+                new CostModelPnpJobPlanner().plan(head, new ArrayList<>(jobPlacements));
+        Assert.assertEquals(2, plannedPlacements.size());
+        for (PlannedPlacement plannedPlacement : plannedPlacements) {
+            Assert.assertEquals(plannedPlacement.nozzle == n1 ? nt2 : nt1,
+                    plannedPlacement.nozzleTip);
+        }
+    }
+
+    @Test
+    public void testPartHeightOrder() throws Exception {
+        n1.loadNozzleTip(nt1);
+        n2.loadNozzleTip(nt2);
+        Part low = createPart("Low", 1, nt1, nt2);
+        Part high = createPart("High", 3, nt1, nt2);
+        List<JobPlacement> jobPlacements = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            jobPlacements.add(createJobPlacement(high));
+            jobPlacements.add(createJobPlacement(low));
+        }
+        List<JobPlacement> order = new ArrayList<>();
+        CostModelPnpJobPlanner planner = new CostModelPnpJobPlanner();
+        planner.setRespectPartHeight(true);
+        runJob(planner, jobPlacements, order);
+        Assert.assertEquals(jobPlacements.size(), order.size());
+        boolean placedHigh = false;
+        for (JobPlacement jobPlacement : order) {
+            if (jobPlacement.getPlacement().getPart() == high) {
+                placedHigh = true;
+            }
+            else {
+                Assert.assertFalse("Low part planned after a high part.", placedHigh);
+            }
+        }
+    }
+
+    /**
+     * A plan that is made and then discarded, as a plan made ahead of time can be, must not
+     * change the plans that follow it.
+     */
+    @Test
+    public void testDiscardedPlanDoesNotChangeNextPlan() throws Exception {
+        n1.loadNozzleTip(nt1);
+        n2.loadNozzleTip(nt2);
+        Part part = createPart("A", 1, nt1, nt2);
+        List<JobPlacement> jobPlacements = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            jobPlacements.add(createJobPlacement(part));
+        }
+        CostModelPnpJobPlanner planner = new CostModelPnpJobPlanner();
+        planner.planUsed(planner.plan(head, new ArrayList<>(jobPlacements)));
+        List<JobPlacement> remaining = new ArrayList<>(jobPlacements.subList(4, 10));
+        List<PlannedPlacement> first = planner.plan(head, new ArrayList<>(remaining));
+        List<PlannedPlacement> second = planner.plan(head, new ArrayList<>(remaining));
+        Assert.assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            Assert.assertSame(first.get(i).jobPlacement, second.get(i).jobPlacement);
+        }
+    }
+
+    /**
+     * Plans every cycle of the job, loading the planned nozzle tips as the job processor would,
+     * and returns the number of nozzle tip changes. If order is not null the planned placements
+     * are added to it in the order they were planned.
+     */
+    private int runJob(CostModelPnpJobPlanner planner, List<JobPlacement> jobPlacements,
+            List<JobPlacement> order) throws Exception {
+        List<JobPlacement> remaining = new ArrayList<>(jobPlacements);
+        int nozzleTipChanges = 0;
+        while (!remaining.isEmpty()) {
+            List<PlannedPlacement> plannedPlacements =
+                    planner.plan(head, new ArrayList<>(remaining));
+            Assert.assertFalse("Planner failed to plan any placements.",
+                    plannedPlacements.isEmpty());
+            planner.planUsed(plannedPlacements);
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                if (plannedPlacement.nozzle.getNozzleTip() != plannedPlacement.nozzleTip) {
+                    plannedPlacement.nozzle.loadNozzleTip(plannedPlacement.nozzleTip);
+                    nozzleTipChanges++;
+                }
+                remaining.remove(plannedPlacement.jobPlacement);
+                if (order != null) {
+                    order.add(plannedPlacement.jobPlacement);
+                }
+            }
+        }
+        return nozzleTipChanges;
+    }
+
+    private Part createPart(String id, double height, NozzleTip... nozzleTips) {
+        org.openpnp.model.Package pkg = new org.openpnp.model.Package(id);
+        for (NozzleTip nozzleTip : nozzleTips) {
+            pkg.addCompatibleNozzleTip(nozzleTip);
+        }
+        Part part = new Part(id);
+        part.setPackage(pkg);
+        part.setHeight(new Length(height, LengthUnit.Millimeters));
+        return part;
+    }
+
+    private JobPlacement createJobPlacement(Part part) {
+        Placement placement = new Placement(part.getId() + rnd.nextInt());
+        placement.setPart(part);
+        placement.setSide(Side.Top);
+        placement.setLocation(new Location(LengthUnit.Millimeters, rnd.nextDouble() * 100,
+                rnd.nextDouble() * 80, 0, 0));
+        return new JobPlacement(boardLocation, placement);
+    }
+}
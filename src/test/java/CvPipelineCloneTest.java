@@ -0,0 +1,110 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.stages.DrawCircles;
+import org.openpnp.vision.pipeline.stages.MaskPolygon;
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.ElementList;
+
+public class CvPipelineCloneTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    private static final String[] DEFAULT_PIPELINES = new String[] {
+            "org/openpnp/machine/reference/ReferenceNozzleTip-Calibration-DefaultPipeline.xml",
+            "org/openpnp/machine/reference/feeder/AdvancedLoosePartFeeder-DefaultPipeline.xml",
+            "org/openpnp/machine/reference/feeder/AdvancedLoosePartFeeder-DefaultTrainingPipeline.xml",
+            "org/openpnp/machine/reference/feeder/BlindsFeeder-DefaultPipeline.xml",
+            "org/openpnp/machine/reference/feeder/ReferenceLoosePartFeeder-DefaultPipeline.xml",
+            "org/openpnp/machine/reference/feeder/ReferenceStripFeeder-DefaultPipeline.xml",
+            "org/openpnp/machine/reference/vision/ReferenceBottomVision-DefaultPipeline.xml",
+            "org/openpnp/machine/reference/vision/ReferenceFiducialLocator-DefaultPipeline.xml",
+    };
+
+    /**
+     * The default pipelines must come out of clone() exactly as they would from the XML round
+     * trip that clone() used to do.
+     */
+    @Test
+    public void testDefaultPipelines() throws Exception {
+        for (String resource : DEFAULT_PIPELINES) {
+            String xml = IOUtils.toString(ClassLoader.getSystemResourceAsStream(resource), "UTF-8");
+            assertCloneMatchesXmlRoundTrip(resource, new CvPipeline(xml));
+        }
+    }
+
+    /**
+     * Color properties are nested elements in the XML.
+     */
+    @Test
+    public void testNestedProperties() throws Exception {
+        CvPipeline pipeline = new CvPipeline();
+        DrawCircles drawCircles = new DrawCircles();
+        drawCircles.setColor(new Color(10, 20, 30, 40));
+        drawCircles.setCenterColor(Color.red);
+        drawCircles.setThickness(3);
+        pipeline.add(drawCircles);
+        MaskPolygon maskPolygon = new MaskPolygon();
+        maskPolygon.setColor(Color.blue);
+        maskPolygon.setShapes("0,0:10,0:10,10");
+        maskPolygon.setInverted(true);
+        pipeline.add(maskPolygon);
+        assertCloneMatchesXmlRoundTrip("nested", pipeline);
+    }
+
+    /**
+     * A stage with a collection property can't be copied directly, so clone() must fall back to
+     * the XML round trip and still give an independent copy.
+     */
+    @Test
+    public void testCollectionProperties() throws Exception {
+        CvPipeline pipeline = new CvPipeline();
+        ListStage listStage = new ListStage();
+        listStage.values.addAll(Arrays.asList("a", "b", "c"));
+        listStage.count = 7;
+        pipeline.add(listStage);
+        pipeline.add(new DrawCircles());
+        assertCloneMatchesXmlRoundTrip("collection", pipeline);
+
+        ListStage copy = (ListStage) pipeline.clone().getStage(listStage.getName());
+        Assert.assertNotSame(listStage.values, copy.values);
+        Assert.assertEquals(listStage.values, copy.values);
+    }
+
+    private static void assertCloneMatchesXmlRoundTrip(String name, CvPipeline pipeline)
+            throws Exception {
+        CvPipeline cloned = pipeline.clone();
+        CvPipeline roundTripped = new CvPipeline(pipeline.toXmlString());
+        Assert.assertEquals(name, roundTripped.toXmlString(), cloned.toXmlString());
+        Assert.assertEquals(name, pipeline.getStages().size(), cloned.getStages().size());
+        for (int i = 0; i < pipeline.getStages().size(); i++) {
+            CvStage stage = pipeline.getStages().get(i);
+            CvStage copy = cloned.getStages().get(i);
+            Assert.assertNotSame(name, stage, copy);
+            Assert.assertEquals(name, stage.getClass(), copy.getClass());
+            Assert.assertEquals(name, stage.getName(), copy.getName());
+        }
+    }
+
+    public static class ListStage extends CvStage {
+        @ElementList(required = false)
+        private List<String> values = new ArrayList<>();
+
+        @Attribute(required = false)
+        private int count;
+
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return null;
+        }
+    }
+}
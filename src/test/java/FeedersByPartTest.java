@@ -0,0 +1,78 @@
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openpnp.machine.reference.feeder.ReferenceTubeFeeder;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Part;
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.base.AbstractPnpJobProcessor.FeedersByPart;
+
+import com.google.common.io.Files;
+
+public class FeedersByPartTest {
+    private Machine machine;
+    private Part part;
+    private Part other;
+
+    @Before
+    public void setUp() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/machine.xml"),
+                new File(workingDirectory, "machine.xml"));
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/packages.xml"),
+                new File(workingDirectory, "packages.xml"));
+        FileUtils.copyURLToFile(ClassLoader.getSystemResource("config/BasicJobTest/parts.xml"),
+                new File(workingDirectory, "parts.xml"));
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        machine = Configuration.get().getMachine();
+        part = new Part("FeedersByPartTest");
+        other = new Part("FeedersByPartTestOther");
+    }
+
+    /**
+     * The index follows feeders being added, removed, enabled, disabled and given another part.
+     */
+    @Test
+    public void testFollowsFeederChanges() throws Exception {
+        FeedersByPart feedersByPart = new FeedersByPart(machine);
+        Assert.assertTrue(feedersByPart.getFeeders(part).isEmpty());
+
+        Feeder f1 = createFeeder(part);
+        Feeder f2 = createFeeder(part);
+        machine.addFeeder(f1);
+        machine.addFeeder(f2);
+        Assert.assertEquals(2, feedersByPart.getFeeders(part).size());
+        Assert.assertSame(f1, feedersByPart.find(part));
+
+        feedersByPart.advance(part);
+        Assert.assertSame(f2, feedersByPart.find(part));
+
+        f2.setEnabled(false);
+        Assert.assertEquals(1, feedersByPart.getFeeders(part).size());
+        Assert.assertSame(f1, feedersByPart.find(part));
+
+        f1.setPart(other);
+        Assert.assertTrue(feedersByPart.getFeeders(part).isEmpty());
+        Assert.assertSame(f1, feedersByPart.find(other));
+
+        machine.removeFeeder(f1);
+        Assert.assertTrue(feedersByPart.getFeeders(other).isEmpty());
+
+        feedersByPart.dispose();
+        machine.removeFeeder(f2);
+    }
+
+    private static Feeder createFeeder(Part part) {
+        Feeder feeder = new ReferenceTubeFeeder();
+        feeder.setPart(part);
+        feeder.setEnabled(true);
+        return feeder;
+    }
+}
@@ -0,0 +1,40 @@
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.util.Histogram;
+
+public class HistogramTest {
+    @Test
+    public void testPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000000L);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500.5, histogram.getMeanMilliseconds(), 0.001);
+        Assert.assertEquals(1, histogram.getMinMilliseconds(), 0.001);
+        Assert.assertEquals(1000, histogram.getMaxMilliseconds(), 0.001);
+        // Buckets are an eighth of a power of two wide, so the midpoint is within 1/16.
+        Assert.assertEquals(500, histogram.get50thPercentileMilliseconds(), 500 / 16.0);
+        Assert.assertEquals(900, histogram.get90thPercentileMilliseconds(), 900 / 16.0);
+        Assert.assertEquals(990, histogram.get99thPercentileMilliseconds(), 990 / 16.0);
+    }
+
+    @Test
+    public void testSingleValue() {
+        Histogram histogram = new Histogram();
+        histogram.record(12345678);
+        // The estimate is limited to the recorded minimum and maximum.
+        Assert.assertEquals(12.345678, histogram.get50thPercentileMilliseconds(), 1e-9);
+        Assert.assertEquals(12.345678, histogram.get99thPercentileMilliseconds(), 1e-9);
+    }
+
+    @Test
+    public void testReset() {
+        Histogram histogram = new Histogram();
+        histogram.record(1000);
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMaxMilliseconds(), 0);
+        Assert.assertEquals(0, histogram.get50thPercentileMilliseconds(), 0);
+    }
+}
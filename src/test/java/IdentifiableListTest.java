@@ -0,0 +1,78 @@
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.model.Identifiable;
+import org.openpnp.model.Named;
+import org.openpnp.util.IdentifiableList;
+
+public class IdentifiableListTest {
+    static class Item implements Identifiable, Named {
+        String id;
+        String name;
+
+        Item(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @Test
+    public void testGet() {
+        IdentifiableList<Item> list = new IdentifiableList<>();
+        Item a = new Item("A", "Alpha");
+        Item b = new Item("B", "Beta");
+        list.add(a);
+        list.add(b);
+        Assert.assertSame(b, list.get("B"));
+        Assert.assertNull(list.get("C"));
+        Assert.assertNull(list.get(null));
+
+        list.remove(b);
+        Assert.assertNull(list.get("B"));
+
+        Item c = new Item("B", "Gamma");
+        list.set(0, c);
+        Assert.assertSame(c, list.get("B"));
+        Assert.assertNull(list.get("A"));
+    }
+
+    @Test
+    public void testChangedIdAndName() {
+        IdentifiableList<Item> list = new IdentifiableList<>();
+        Item a = new Item("A", "Alpha");
+        list.add(a);
+        Assert.assertSame(a, list.get("A"));
+        Assert.assertSame(a, list.getByName("Alpha"));
+
+        a.id = "Z";
+        a.setName("Omega");
+        Assert.assertNull(list.get("A"));
+        Assert.assertSame(a, list.get("Z"));
+        Assert.assertNull(list.getByName("Alpha"));
+        Assert.assertSame(a, list.getByName("Omega"));
+    }
+
+    @Test
+    public void testCreateId() {
+        IdentifiableList<Item> list = new IdentifiableList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(new Item(list.createId("FDR"), null));
+        }
+        Assert.assertEquals("FDR1000", list.createId("FDR"));
+        Assert.assertSame(list.get(500), list.get("FDR500"));
+    }
+}
@@ -0,0 +1,101 @@
+import java.awt.Point;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.util.OpenCvUtils;
+import org.openpnp.util.ReferenceMatMaxima;
+
+public class MatMaximaTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @Test
+    public void testSinglePeaks() {
+        Mat mat = new Mat(20, 30, CvType.CV_32FC1, new Scalar(0));
+        mat.put(5, 7, 0.9);
+        mat.put(12, 20, 0.8);
+        mat.put(15, 29, 0.3);
+        List<Point> maxima = OpenCvUtils.matMaxima(mat, 0.5, 1.0);
+        Assert.assertEquals(2, maxima.size());
+        Assert.assertEquals(new Point(7, 5), maxima.get(0));
+        Assert.assertEquals(new Point(20, 12), maxima.get(1));
+        mat.release();
+    }
+
+    @Test
+    public void testDepthsAgree() {
+        Mat mat = new Mat(48, 64, CvType.CV_32FC1);
+        Core.randu(mat, 0, 1);
+        Mat mat64 = new Mat();
+        mat.convertTo(mat64, CvType.CV_64F);
+        List<Point> maxima = OpenCvUtils.matMaxima(mat, 0.5, 1.0);
+        Assert.assertFalse(maxima.isEmpty());
+        Assert.assertEquals(maxima, OpenCvUtils.matMaxima(mat64, 0.5, 1.0));
+        for (Point p : maxima) {
+            double value = mat.get(p.y, p.x)[0];
+            Assert.assertTrue(value >= 0.5);
+            for (int r = Math.max(0, p.y - 1); r <= Math.min(mat.rows() - 1, p.y + 1); r++) {
+                for (int c = Math.max(0, p.x - 1); c <= Math.min(mat.cols() - 1, p.x + 1); c++) {
+                    Assert.assertTrue(mat.get(r, c)[0] <= value);
+                }
+            }
+        }
+        mat.release();
+        mat64.release();
+    }
+
+    /**
+     * Compares matMaxima() against the original implementation on random images with and
+     * without plateaus, for the float, double and byte paths.
+     */
+    @Test
+    public void testMatchesReference() {
+        int[][] sizes = new int[][] {{3, 3}, {5, 17}, {48, 64}, {101, 37}};
+        for (int[] size : sizes) {
+            for (int levels : new int[] {4, 16, 0}) {
+                Mat mat = new Mat(size[0], size[1], CvType.CV_32FC1);
+                Core.randu(mat, 0, 1);
+                if (levels > 0) {
+                    // Quantize to create plateaus of equal values.
+                    Mat quantized = new Mat();
+                    mat.convertTo(quantized, CvType.CV_8U, levels);
+                    quantized.convertTo(mat, CvType.CV_32F, 1.0 / levels);
+                    quantized.release();
+                }
+                for (int type : new int[] {CvType.CV_32F, CvType.CV_64F, CvType.CV_8U}) {
+                    Mat typed = new Mat();
+                    mat.convertTo(typed, type, type == CvType.CV_8U ? 255 : 1);
+                    double rangeMax = type == CvType.CV_8U ? 255 : 1;
+                    for (double rangeMin : new double[] {0, 0.5 * rangeMax}) {
+                        String message = String.format("%dx%d, %d levels, type %d, min %f",
+                                size[0], size[1], levels, type, rangeMin);
+                        Assert.assertEquals(message,
+                                ReferenceMatMaxima.matMaxima(typed, rangeMin, rangeMax),
+                                OpenCvUtils.matMaxima(typed, rangeMin, rangeMax));
+                    }
+                    typed.release();
+                }
+                mat.release();
+            }
+        }
+    }
+
+    @Test
+    public void testBlurredPeaksMatchReference() {
+        Mat mat = new Mat(120, 160, CvType.CV_32FC1);
+        Core.randu(mat, 0, 1);
+        Imgproc.GaussianBlur(mat, mat, new Size(9, 9), 3);
+        Assert.assertEquals(ReferenceMatMaxima.matMaxima(mat, 0.4, 1.0),
+                OpenCvUtils.matMaxima(mat, 0.4, 1.0));
+        mat.release();
+    }
+}
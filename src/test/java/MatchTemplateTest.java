@@ -0,0 +1,197 @@
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.Core.MinMaxLocResult;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.util.OpenCvUtils;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.CvStage.Result.TemplateMatch;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
+import org.openpnp.vision.pipeline.stages.MatchTemplate;
+
+public class MatchTemplateTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+        System.loadLibrary(org.opencv.core.Core.NATIVE_LIBRARY_NAME);
+    }
+
+    private static final int TEMPLATE_SIZE = 48;
+
+    private static final double EPSILON = 1e-4;
+
+    private static Mat image;
+    private static Mat template;
+    private static Point templateLocation;
+    private static Mat fullResult;
+
+    /**
+     * Cuts a 640x480 image out of the middle of the pnp-test sample board and uses its most
+     * detailed patch as the template, so that the template has one clear best match.
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        BufferedImage board = ImageIO.read(ClassLoader.getSystemResource("samples/pnp-test/pnp-test.png"));
+        Mat boardMat = OpenCvUtils.toMat(board);
+        Mat boardGray = new Mat();
+        Imgproc.cvtColor(boardMat, boardGray, Imgproc.COLOR_BGR2GRAY);
+        boardMat.release();
+        Mat crop = boardGray.submat(new Rect(boardGray.cols() / 2 - 320, boardGray.rows() / 2 - 240, 640, 480));
+        image = crop.clone();
+        crop.release();
+        boardGray.release();
+
+        double bestStdDev = -1;
+        for (int y = TEMPLATE_SIZE; y + 2 * TEMPLATE_SIZE <= image.rows(); y += TEMPLATE_SIZE / 2) {
+            for (int x = TEMPLATE_SIZE; x + 2 * TEMPLATE_SIZE <= image.cols(); x += TEMPLATE_SIZE / 2) {
+                Mat patch = image.submat(new Rect(x, y, TEMPLATE_SIZE, TEMPLATE_SIZE));
+                MatOfDouble mean = new MatOfDouble();
+                MatOfDouble stdDev = new MatOfDouble();
+                Core.meanStdDev(patch, mean, stdDev);
+                if (stdDev.get(0, 0)[0] > bestStdDev) {
+                    bestStdDev = stdDev.get(0, 0)[0];
+                    templateLocation = new Point(x, y);
+                }
+                mean.release();
+                stdDev.release();
+                patch.release();
+            }
+        }
+        Mat patch = image.submat(new Rect(templateLocation.x, templateLocation.y, TEMPLATE_SIZE,
+                TEMPLATE_SIZE));
+        template = patch.clone();
+        patch.release();
+
+        fullResult = new Mat();
+        Imgproc.matchTemplate(image, template, fullResult, Imgproc.TM_CCOEFF_NORMED);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        image.release();
+        template.release();
+        fullResult.release();
+    }
+
+    @Test
+    public void testFullResolution() {
+        Mat result = MatchTemplate.matchTemplate(image, template, null, 0, 0.8);
+        assertSameBestMatch(result);
+        result.release();
+    }
+
+    @Test
+    public void testPyramid() {
+        for (int levels = 1; levels <= 3; levels++) {
+            Mat result = MatchTemplate.matchTemplate(image, template, null, levels, 0.8);
+            assertSameBestMatch(result);
+            assertMaximaAreFullResolutionMaxima(result);
+            result.release();
+        }
+    }
+
+    @Test
+    public void testSearchRect() {
+        Rect searchRect = new Rect(templateLocation.x - 20, templateLocation.y - 20, 41, 41);
+        Mat result = MatchTemplate.matchTemplate(image, template, searchRect, 0, 0.8);
+        assertSameBestMatch(result);
+        assertMaximaAreFullResolutionMaxima(result);
+        result.release();
+    }
+
+    @Test
+    public void testPyramidAndSearchRect() {
+        Rect searchRect = new Rect(templateLocation.x - 60, templateLocation.y - 60, 121, 121);
+        Mat result = MatchTemplate.matchTemplate(image, template, searchRect, 2, 0.8);
+        assertSameBestMatch(result);
+        assertMaximaAreFullResolutionMaxima(result);
+        result.release();
+    }
+
+    /**
+     * The search radius is centered on the MatchTemplate.center pipeline property when it is set.
+     */
+    @Test
+    public void testSearchCenterProperty() throws Exception {
+        int radius = 5;
+        org.opencv.core.Point center = new org.opencv.core.Point(
+                templateLocation.x + TEMPLATE_SIZE / 2, templateLocation.y + TEMPLATE_SIZE / 2);
+        try (CvPipeline pipeline = new CvPipeline()) {
+            pipeline.add("template", new TemplateStage());
+            pipeline.add("image", new ImageCapture());
+            MatchTemplate matchTemplate = new MatchTemplate();
+            matchTemplate.setTemplateStageName("template");
+            matchTemplate.setSearchRadius(radius);
+            pipeline.add("match", matchTemplate);
+            pipeline.setProperty("frame", image);
+            pipeline.setProperty("MatchTemplate.center", center);
+            pipeline.process();
+
+            Object model = pipeline.getResult("match").model;
+            Assert.assertTrue(String.valueOf(model), model instanceof List);
+            @SuppressWarnings("unchecked")
+            List<TemplateMatch> matches = (List<TemplateMatch>) model;
+            Assert.assertFalse(matches.isEmpty());
+            Assert.assertEquals(templateLocation.x, (int) matches.get(0).x);
+            Assert.assertEquals(templateLocation.y, (int) matches.get(0).y);
+            for (TemplateMatch match : matches) {
+                Assert.assertTrue(Math.abs(match.x + TEMPLATE_SIZE / 2 - center.x) <= radius);
+                Assert.assertTrue(Math.abs(match.y + TEMPLATE_SIZE / 2 - center.y) <= radius);
+            }
+        }
+    }
+
+    /**
+     * Checks that the best match in the result is where a plain full resolution
+     * Imgproc.matchTemplate() puts it, with the same score.
+     */
+    private static void assertSameBestMatch(Mat result) {
+        Assert.assertEquals(fullResult.size(), result.size());
+        MinMaxLocResult expected = Core.minMaxLoc(fullResult);
+        MinMaxLocResult actual = Core.minMaxLoc(result);
+        Assert.assertEquals(templateLocation.x, (int) expected.maxLoc.x);
+        Assert.assertEquals(templateLocation.y, (int) expected.maxLoc.y);
+        Assert.assertEquals(expected.maxLoc, actual.maxLoc);
+        Assert.assertEquals(expected.maxVal, actual.maxVal, EPSILON);
+    }
+
+    /**
+     * Checks that every maximum reported for a partially matched result is a local maximum of
+     * the full resolution result too, so none of them comes from the edge of a matched window.
+     */
+    private static void assertMaximaAreFullResolutionMaxima(Mat result) {
+        List<Point> maxima = MatchTemplate.matchMaxima(result, 0.3, 1.0);
+        Assert.assertFalse(maxima.isEmpty());
+        for (Point p : maxima) {
+            double value = fullResult.get(p.y, p.x)[0];
+            Assert.assertEquals(value, result.get(p.y, p.x)[0], EPSILON);
+            for (int r = Math.max(0, p.y - 1); r <= Math.min(fullResult.rows() - 1, p.y + 1); r++) {
+                for (int c = Math.max(0, p.x - 1); c <= Math.min(fullResult.cols() - 1, p.x + 1); c++) {
+                    Assert.assertTrue("Maximum at " + p + " is not a full resolution maximum.",
+                            fullResult.get(r, c)[0] <= value + EPSILON);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the template the working image, so MatchTemplate can read it from this stage.
+     */
+    public static class TemplateStage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(template.clone());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openpnp.gui.support.Wizard;
+import org.openpnp.machine.reference.ReferenceCamera;
+import org.openpnp.model.Configuration;
+import org.openpnp.spi.PropertySheetHolder;
+
+import com.google.common.io.Files;
+
+public class MotionAwareCaptureTest {
+    private FakeCamera camera;
+
+    @Before
+    public void setUp() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        camera = new FakeCamera();
+    }
+
+    @Test
+    public void testSkipsBufferedFrames() throws Exception {
+        camera.setMotionAwareSkipFrames(2);
+        BufferedImage before = camera.frame();
+        Thread.sleep(5);
+        long timeMs = System.currentTimeMillis();
+        BufferedImage first = camera.frame();
+        BufferedImage second = camera.frame();
+        BufferedImage third = camera.frame();
+        BufferedImage image = camera.captureAfter(timeMs, 1000);
+        Assert.assertNotSame(before, image);
+        Assert.assertNotSame(first, image);
+        Assert.assertNotSame(second, image);
+        Assert.assertSame(third, image);
+    }
+
+    @Test
+    public void testNoSkipFrames() throws Exception {
+        camera.setMotionAwareSkipFrames(0);
+        camera.frame();
+        Thread.sleep(5);
+        long timeMs = System.currentTimeMillis();
+        BufferedImage first = camera.frame();
+        camera.frame();
+        Assert.assertSame(first, camera.captureAfter(timeMs, 1000));
+    }
+
+    @Test
+    public void testWaitsForFrames() throws Exception {
+        camera.setMotionAwareSkipFrames(3);
+        long timeMs = System.currentTimeMillis();
+        BufferedImage[] frames = new BufferedImage[4];
+        Thread source = new Thread(() -> {
+            try {
+                for (int i = 0; i < frames.length; i++) {
+                    Thread.sleep(20);
+                    frames[i] = camera.frame();
+                }
+            }
+            catch (InterruptedException e) {
+            }
+        });
+        source.start();
+        BufferedImage image = camera.captureAfter(timeMs, 2000);
+        source.join();
+        Assert.assertNotNull(image);
+        Assert.assertSame(frames[3], image);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        camera.setMotionAwareSkipFrames(1);
+        camera.frame();
+        Thread.sleep(5);
+        long timeMs = System.currentTimeMillis();
+        camera.frame();
+        Assert.assertNull(camera.captureAfter(timeMs, 50));
+    }
+
+    /**
+     * A camera whose continuous capture frames are produced by the test.
+     */
+    public static class FakeCamera extends ReferenceCamera {
+        public BufferedImage frame() {
+            BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+            broadcastCapture(image);
+            return image;
+        }
+
+        @Override
+        protected BufferedImage internalCapture() {
+            return null;
+        }
+
+        @Override
+        public Wizard getConfigurationWizard() {
+            return null;
+        }
+
+        @Override
+        public String getPropertySheetHolderTitle() {
+            return getName();
+        }
+
+        @Override
+        public PropertySheetHolder[] getChildPropertySheetHolders() {
+            return null;
+        }
+    }
+}
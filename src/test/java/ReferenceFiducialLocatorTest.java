@@ -92,4 +92,17 @@ public class ReferenceFiducialLocatorTest {
         assertEquals(results.size(), 2);
         System.out.println("testSameY " + results + " in " + (System.currentTimeMillis() - t));
     }
+
+    @Test
+    public void testManyOnHull() {
+        List<Placement> points = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            double a = 2 * Math.PI * i / 60;
+            points.add(createPlacement(100 + 100 * Math.cos(a), 100 + 100 * Math.sin(a)));
+        }
+        long t = System.currentTimeMillis();
+        List<Placement> results = ReferenceFiducialLocator.getBestFiducials(points);
+        assertEquals(results.size(), 3);
+        System.out.println("testManyOnHull " + results + " in " + (System.currentTimeMillis() - t));
+    }
 }
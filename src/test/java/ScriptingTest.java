@@ -0,0 +1,73 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openpnp.Scripting;
+import org.openpnp.model.Configuration;
+
+import com.google.common.io.Files;
+
+public class ScriptingTest {
+    private Scripting scripting;
+    private File eventsDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        scripting = new Scripting();
+        eventsDirectory = new File(scripting.getScriptsDirectory(), "Events");
+    }
+
+    @Test
+    public void testOnFindsEventScripts() throws Exception {
+        FileUtils.writeStringToFile(new File(eventsDirectory, "Test.Event.bsh"),
+                "results.add(\"bsh\");");
+        FileUtils.writeStringToFile(new File(eventsDirectory, "Other.Event.bsh"),
+                "results.add(\"other\");");
+
+        List<String> results = new ArrayList<>();
+        scripting.on("Test.Event", globals(results));
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("bsh", results.get(0));
+
+        results.clear();
+        scripting.on("No.Such.Event", globals(results));
+        Assert.assertTrue(results.isEmpty());
+    }
+
+    @Test
+    public void testCacheInvalidatedOnFileChange() throws Exception {
+        File script = new File(eventsDirectory, "Test.Event.bsh");
+        FileUtils.writeStringToFile(script, "results.add(\"first\");");
+
+        List<String> results = new ArrayList<>();
+        scripting.on("Test.Event", globals(results));
+        scripting.on("Test.Event", globals(results));
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals("first", results.get(1));
+
+        // Make sure the change is visible even on file systems with a coarse modification time.
+        long lastModified = script.lastModified();
+        FileUtils.writeStringToFile(script, "results.add(\"changed\");");
+        script.setLastModified(lastModified + 2000);
+
+        results.clear();
+        scripting.on("Test.Event", globals(results));
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("changed", results.get(0));
+    }
+
+    private static Map<String, Object> globals(List<String> results) {
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("results", results);
+        return globals;
+    }
+}
@@ -0,0 +1,130 @@
+package org.openpnp.machine.reference.driver;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.util.Histogram;
+import org.openpnp.util.Metrics;
+import org.openpnp.util.VirtualClock;
+
+import com.google.common.io.Files;
+
+public class SimulationDriverTest {
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void testTrapezoidMove() {
+        // Reaching 500 mm/s at 3000 mm/s² takes 1/6 s and 41.67 mm, so 100 mm ramps up and
+        // down in 83.33 mm and cruises for the remaining 16.67 mm.
+        double expected = 100.0 / 500 + 500.0 / 3000;
+        Assert.assertEquals(expected, SimulationDriver.getMoveSeconds(100, 500, 3000), EPSILON);
+        Assert.assertEquals(expected, SimulationDriver.getMoveSeconds(-100, 500, 3000), EPSILON);
+    }
+
+    @Test
+    public void testTriangleMove() {
+        // 10 mm is too short to reach 500 mm/s at 3000 mm/s², so the move accelerates for half
+        // the distance and decelerates for the other half.
+        double expected = 2 * Math.sqrt(10.0 / 3000);
+        Assert.assertEquals(expected, SimulationDriver.getMoveSeconds(10, 500, 3000), EPSILON);
+        // The peak velocity stays below the limit.
+        Assert.assertTrue(3000 * expected / 2 < 500);
+    }
+
+    @Test
+    public void testTrapezoidAndTriangleMeet() {
+        // At the distance where the velocity limit is just reached, both profiles take the same
+        // time.
+        double rampDistance = 500.0 * 500.0 / 3000;
+        Assert.assertEquals(2 * Math.sqrt(rampDistance / 3000),
+                SimulationDriver.getMoveSeconds(rampDistance, 500, 3000), EPSILON);
+        Assert.assertEquals(rampDistance / 500 + 500.0 / 3000,
+                SimulationDriver.getMoveSeconds(rampDistance, 500, 3000), EPSILON);
+    }
+
+    @Test
+    public void testDegenerateMoves() {
+        Assert.assertEquals(0, SimulationDriver.getMoveSeconds(0, 500, 3000), EPSILON);
+        Assert.assertEquals(0, SimulationDriver.getMoveSeconds(100, 0, 3000), EPSILON);
+        // Without an acceleration limit the axis moves at constant velocity.
+        Assert.assertEquals(0.2, SimulationDriver.getMoveSeconds(100, 500, 0), EPSILON);
+    }
+
+    /**
+     * Runs the pnp-test sample job, as SampleJobTest does, on a SimulationDriver with virtual
+     * time, and checks the cycle times the job processor reports. They are measured on the
+     * virtual clock, so they must add up to no more than the simulated job time, and a machine
+     * with half the velocity and acceleration must report longer cycles.
+     */
+    @Test
+    public void testSampleJobCycleTime() throws Exception {
+        SimulationDriver fast = new SimulationDriver();
+        double fastCycleMs = runSampleJob(fast);
+
+        SimulationDriver slow = new SimulationDriver();
+        slow.setVelocityX(fast.getVelocityX() / 2);
+        slow.setVelocityY(fast.getVelocityY() / 2);
+        slow.setVelocityZ(fast.getVelocityZ() / 2);
+        slow.setAccelerationX(fast.getAccelerationX() / 2);
+        slow.setAccelerationY(fast.getAccelerationY() / 2);
+        slow.setAccelerationZ(fast.getAccelerationZ() / 2);
+        double slowCycleMs = runSampleJob(slow);
+
+        Assert.assertTrue("Slower machine reported " + slowCycleMs + " ms, faster machine "
+                + fastCycleMs + " ms.", slowCycleMs > fastCycleMs);
+    }
+
+    /**
+     * Runs the sample job on the driver and returns the mean reported cycle time in
+     * milliseconds.
+     */
+    private double runSampleJob(SimulationDriver driver) throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        ReferenceMachine machine = (ReferenceMachine) Configuration.get().getMachine();
+        machine.setDriver(driver);
+        machine.getDefaultHead().getDefaultCamera().setSettleTimeMs(0);
+
+        ReferencePnpJobProcessor jobProcessor =
+                (ReferencePnpJobProcessor) machine.getPnpJobProcessor();
+
+        File jobFile = new File("samples");
+        jobFile = new File(jobFile, "pnp-test");
+        jobFile = new File(jobFile, "pnp-test.job.xml");
+        Job job = Configuration.get().loadJob(jobFile);
+
+        Metrics.reset();
+        try {
+            machine.setEnabled(true);
+            Assert.assertTrue(VirtualClock.isEnabled());
+            long startNanos = VirtualClock.nanoTime();
+            long wallStartNanos = System.nanoTime();
+            jobProcessor.initialize(job);
+            while (jobProcessor.next());
+            long jobNanos = VirtualClock.nanoTime() - startNanos;
+            long wallNanos = System.nanoTime() - wallStartNanos;
+
+            Histogram cycles = Metrics.getHistogram("job.cycle");
+            Assert.assertTrue("No cycles were reported.", cycles.getCount() > 0);
+            Assert.assertTrue("Cycles took no simulated time.", cycles.getMeanMilliseconds() > 0);
+            Assert.assertTrue("Cycles took longer than the job.",
+                    cycles.getTotalMilliseconds() <= jobNanos / 1e6);
+            System.out.println(String.format(
+                    "SimulationDriverTest: %d cycles, mean %.1f ms, simulated job %.1f s, wall clock %.1f s",
+                    cycles.getCount(), cycles.getMeanMilliseconds(), jobNanos / 1e9,
+                    wallNanos / 1e9));
+            return cycles.getMeanMilliseconds();
+        }
+        finally {
+            machine.setEnabled(false);
+        }
+    }
+}